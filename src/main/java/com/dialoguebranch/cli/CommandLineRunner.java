@@ -30,6 +30,7 @@ package com.dialoguebranch.cli;
 
 import com.dialoguebranch.exception.InvalidInputException;
 import com.dialoguebranch.exception.ScriptParseException;
+import com.dialoguebranch.model.Constants;
 import com.dialoguebranch.model.Language;
 import com.dialoguebranch.parser.*;
 import com.dialoguebranch.script.model.EditableProject;
@@ -38,6 +39,7 @@ import com.dialoguebranch.script.model.EditableNode;
 import com.dialoguebranch.script.model.ScriptTreeNode;
 import com.dialoguebranch.script.parser.EditableProjectParser;
 import com.dialoguebranch.script.parser.EditableScriptParser;
+import com.dialoguebranch.writer.ProjectSnapshotWriter;
 import nl.rrd.utils.exception.ParseException;
 
 import java.io.File;
@@ -87,6 +89,7 @@ public class CommandLineRunner {
 			  2. Open a DialogueBranch Project (from metadata.xml) and generate a summary.
 			  3. Open a .dlb script file and parse it with the EditableScriptParser.
 			  4. Open a .xml metadata file and parse it with the EditableProjectParser.
+			  5. Open a DialogueBranch Folder and write a binary project snapshot.
 		""");
 
 		Scanner userInputScanner = new Scanner(System.in);
@@ -98,6 +101,7 @@ public class CommandLineRunner {
 			case "2" -> generateProjectSummaryFromXML();
 			case "3" -> parseScriptFile();
 			case "4" -> parseEditableProject();
+			case "5" -> writeProjectSnapshotFromFolder();
 			default -> {
 				System.out.println("Unknown scenario '" + scenario + "', please provide a valid " +
 						"number from the list provided above.");
@@ -183,6 +187,45 @@ public class CommandLineRunner {
 		System.out.println(readResult.generateSummaryString());
 	}
 
+	/**
+	 * Asks the user to provide a folder, then parses the Dialogue Branch project in that folder and
+	 * writes a binary snapshot of the project to a file "project.dlbs" in the same folder. The
+	 * snapshot can be loaded with the {@link ProjectSnapshotParser}.
+	 */
+	private static void writeProjectSnapshotFromFolder() {
+		File rootDirectory = null;
+		boolean rootDirectoryValid = false;
+
+		while(!rootDirectoryValid) {
+			System.out.println("Please provide the root directory of the DialogueBranch project:");
+			try {
+				rootDirectory = askUserInputDirectory();
+				rootDirectoryValid = true;
+			} catch (InvalidInputException e) {
+				System.err.println("Error: " + e.getMessage());
+			}
+		}
+
+		FileLoader fileLoader = new DirectoryFileLoader(rootDirectory);
+		File snapshotFile = new File(rootDirectory,
+				"project" + Constants.DLB_SNAPSHOT_FILE_EXTENSION);
+		try {
+			ProjectParserResult readResult = new ProjectParser(fileLoader).parse();
+			if (readResult.getProject() == null) {
+				System.out.println(readResult.generateSummaryString());
+				return;
+			}
+			ProjectSnapshotWriter.write(readResult.getProject(), fileLoader, snapshotFile);
+		} catch (IOException ex) {
+			System.err.println("ERROR: Can't write DialogueBranch project snapshot for " +
+					"directory: " + rootDirectory.getAbsolutePath() + ": " + ex.getMessage());
+			System.exit(0);
+			return;
+		}
+
+		System.out.println("Written project snapshot to " + snapshotFile.getAbsolutePath());
+	}
+
 	private static void parseScriptFile() {
 		File scriptFile = null;
 		boolean scriptFileValid = false;
@@ -37,6 +37,7 @@ import com.dialoguebranch.model.nodepointer.InternalNodePointer;
 import nl.rrd.utils.expressions.EvaluationException;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +57,9 @@ public class ActiveDialogue {
 	private final Dialogue dialogueDefinition;
 	private Node currentNode;
 	private VariableStore variableStore;
+	private NodeRenderCache renderCache = null;
+	private boolean captureNodeInput = false;
+	private NodeExecution lastExecution = null;
 
 	// --------------------------------------------------------
 	// -------------------- Constructor(s) --------------------
@@ -131,6 +135,47 @@ public class ActiveDialogue {
 		this.variableStore = variableStore;
 	}
 
+	/**
+	 * Returns the {@link NodeRenderCache} that is used by {@link #executeNode(Node,
+	 * ZonedDateTime) executeNode()}, or null if executed nodes are not cached (default).
+	 * @return the render cache or null
+	 */
+	public NodeRenderCache getRenderCache() {
+		return renderCache;
+	}
+
+	/**
+	 * Sets the {@link NodeRenderCache} that is used by {@link #executeNode(Node, ZonedDateTime)
+	 * executeNode()}. The same cache can be shared by the active dialogues of all users. If it is
+	 * null (default), executed nodes are not cached.
+	 * @param renderCache the render cache or null
+	 */
+	public void setRenderCache(NodeRenderCache renderCache) {
+		this.renderCache = renderCache;
+	}
+
+	/**
+	 * Returns whether {@link #executeNode(Node, ZonedDateTime) executeNode()} keeps the values
+	 * that the variables read by the node had before it was executed. The default is false.
+	 * @return true if the input values of executed nodes are kept, false otherwise
+	 */
+	public boolean isCaptureNodeInput() {
+		return captureNodeInput;
+	}
+
+	/**
+	 * Sets whether {@link #executeNode(Node, ZonedDateTime) executeNode()} should keep the values
+	 * that the variables read by the node had before it was executed. This should be enabled if
+	 * the dialogue may be passivated with {@link PassivatedDialogue#passivate(ActiveDialogue)},
+	 * because a node can change the variables that it reads. If it is disabled (default), the
+	 * values are read from the variable store at the time the dialogue is passivated.
+	 * @param captureNodeInput true if the input values of executed nodes should be kept, false
+	 *                         otherwise
+	 */
+	public void setCaptureNodeInput(boolean captureNodeInput) {
+		this.captureNodeInput = captureNodeInput;
+	}
+
 	// -------------------------------------------------------
 	// -------------------- Other Methods --------------------
 	// -------------------------------------------------------
@@ -189,7 +234,7 @@ public class ActiveDialogue {
 	/**
 	 * Retrieves the pointer to the next node based on the provided {@code replyId}. This might be a
 	 * pointer to the end node. This method also performs any "set" actions associated with the
-	 * reply.
+	 * reply. The listeners of the variable store are notified of all changes at once.
 	 * 
 	 * @param replyId the reply ID
 	 * @param eventTime the time (in the user's timezone) of the event that triggered this
@@ -203,11 +248,13 @@ public class ActiveDialogue {
 		Map<String,Object> variableMap =
 				variableStore.getModifiableMap(true, eventTime,
 					VariableStoreChange.Source.DLB_SCRIPT);
-		for (Command command : selectedReply.getCommands()) {
-			if (command instanceof SetCommand setCommand) {
-				setCommand.getExpression().evaluate(variableMap);
+		variableStore.runInBatch(() -> {
+			for (Command command : selectedReply.getCommands()) {
+				if (command instanceof SetCommand setCommand) {
+					setCommand.getFoldedExpression().evaluate(variableMap);
+				}
 			}
-		}
+		});
 		return selectedReply.getNodePointer();
 	}
 	
@@ -276,7 +323,7 @@ public class ActiveDialogue {
 				.getSegments();
 		for (NodeBody.Segment segment : segments) {
 			if (segment instanceof NodeBody.TextSegment textSegment) {
-				result.append(textSegment.getText().evaluate(null));
+				textSegment.getText().appendTo(result, null);
 			} else {
 				NodeBody.CommandSegment cmdSegment =
 						(NodeBody.CommandSegment)segment;
@@ -295,6 +342,14 @@ public class ActiveDialogue {
 	 * sent to the client, is added to the (agent or reply) statement body in the resulting node.
 	 * This content can be text or client commands, with all variables resolved.
 	 *
+	 * <p>The listeners of the variable store are notified of all variable changes in the node at
+	 * once, after the node has been executed.</p>
+	 *
+	 * <p>If the node is static, this method returns the shared, frozen result of {@link
+	 * Node#getPrerenderedNode()} without executing the node again. Otherwise, if a {@link
+	 * NodeRenderCache} has been set and the node is free of side effects, the executed node is
+	 * taken from or added to the cache, and it is frozen as well.</p>
+	 *
 	 * @param node a node to execute
 	 * @param eventTime the time stamp (in the time zone of the user) of the event that triggered
 	 *                  the execution of this DialogueBranch Node
@@ -302,14 +357,44 @@ public class ActiveDialogue {
 	 * @throws EvaluationException if an expression cannot be evaluated
 	 */
 	public Node executeNode(Node node, ZonedDateTime eventTime) throws EvaluationException {
+		Node prerenderedNode = node.getPrerenderedNode();
+		if (prerenderedNode != null) {
+			// a static node reads no variables
+			lastExecution = captureNodeInput ? new NodeExecution(prerenderedNode, List.of(),
+					new Object[0]) : null;
+			return prerenderedNode;
+		}
 		Node processedNode = new Node();
 		processedNode.setHeader(node.getHeader());
 		NodeBody processedBody = new NodeBody();
 		Map<String,Object> variables =
 				variableStore.getModifiableMap(true, eventTime,
 						VariableStoreChange.Source.DLB_SCRIPT);
-		node.getBody().execute(variables, true, processedBody);
+		List<String> inputNames = null;
+		Object[] inputValues = null;
+		if (captureNodeInput || renderCache != null) {
+			inputNames = node.getBody().getCompiledBody().getReadVariableNames();
+			inputValues = new Object[inputNames.size()];
+			for (int i = 0; i < inputValues.length; i++) {
+				inputValues[i] = variables.get(inputNames.get(i));
+			}
+		}
+		NodeRenderCache.Key cacheKey = null;
+		if (renderCache != null) {
+			cacheKey = renderCache.createKey(dialogueFileDescription.getLanguage(), node,
+					inputValues);
+			Node cachedNode = cacheKey == null ? null : renderCache.get(cacheKey);
+			if (cachedNode != null) {
+				lastExecution = new NodeExecution(cachedNode, inputNames, inputValues);
+				return cachedNode;
+			}
+		}
+		variableStore.runInBatch(() -> node.getBody().execute(variables, true, processedBody));
 		processedNode.setBody(processedBody);
+		if (cacheKey != null)
+			renderCache.put(cacheKey, processedNode);
+		lastExecution = inputValues == null ? null :
+				new NodeExecution(processedNode, inputNames, inputValues);
 		return processedNode;
 	}
 
@@ -330,14 +415,57 @@ public class ActiveDialogue {
 	 */
 	public Node executeNodeStateless(Node node, ZonedDateTime eventTime)
 			throws EvaluationException {
+		Node prerenderedNode = node.getPrerenderedNode();
+		if (prerenderedNode != null)
+			return prerenderedNode;
 		Node processedNode = new Node();
 		processedNode.setHeader(node.getHeader());
 		NodeBody processedBody = new NodeBody();
-		Map<String,Object> variables = new LinkedHashMap<>(
+		Map<String,Object> variables = new VariableOverlayMap(
 				variableStore.getModifiableMap(false,eventTime));
 		node.getBody().execute(variables, true, processedBody);
 		processedNode.setBody(processedBody);
 		return processedNode;
 	}
 
+	/**
+	 * Returns the values that the variables read by the current node had just before the node was
+	 * executed, as a map from variable name to value. If the current node was not executed by
+	 * this {@link ActiveDialogue}, or if the input values were not kept (see {@link
+	 * #setCaptureNodeInput(boolean) setCaptureNodeInput()}), this method returns null.
+	 *
+	 * @return the input values of the current node or null
+	 */
+	Map<String,Object> getCurrentNodeInput() {
+		NodeExecution execution = lastExecution;
+		if (currentNode == null || execution == null || execution.processedNode != currentNode)
+			return null;
+		Map<String,Object> result = new LinkedHashMap<>();
+		for (int i = 0; i < execution.values.length; i++) {
+			result.put(execution.names.get(i), execution.values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the current node to a node that was executed outside this {@link ActiveDialogue},
+	 * together with the values of the variables that it read (see {@link
+	 * #getCurrentNodeInput()}).
+	 *
+	 * @param processedNode the executed node
+	 * @param input the input values of the node
+	 */
+	void restoreCurrentNode(Node processedNode, Map<String,Object> input) {
+		this.currentNode = processedNode;
+		this.lastExecution = new NodeExecution(processedNode,
+				new ArrayList<>(input.keySet()), input.values().toArray());
+	}
+
+	/**
+	 * The result of the last call of {@link #executeNode(Node, ZonedDateTime) executeNode()},
+	 * with the variable values that the node read.
+	 */
+	private record NodeExecution(Node processedNode, List<String> names, Object[] values) {
+	}
+
 }
@@ -0,0 +1,273 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link AsyncVariableStoreDispatcher} delivers the change notifications of a {@link
+ * VariableStore} to its {@link VariableStoreOnChangeListener}s on a separate {@link Executor},
+ * so slow listeners do not delay the thread that changes the variables. It is enabled with {@link
+ * VariableStore#enableAsyncDispatch(Executor, int, OverflowPolicy)}.
+ *
+ * <p>Each store has its own bounded queue of notifications. The notifications are delivered in
+ * order, one at a time, so a listener is never called concurrently for the same store. The
+ * executor can be shared by many stores. When the queue is full, the {@link OverflowPolicy}
+ * determines what happens with a new notification.</p>
+ *
+ * <p>Listeners may change the store themselves. Such changes are always added to the queue,
+ * even if it is full, because waiting would block the delivery thread forever. If the executor
+ * rejects the delivery, the notifications are delivered on the thread that dispatches them.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class AsyncVariableStoreDispatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(
+			AsyncVariableStoreDispatcher.class);
+
+	/**
+	 * Defines what happens with a new notification when the queue is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Wait until there is room in the queue. If the waiting thread is interrupted, it stops
+		 * waiting and adds the notification anyway, and the interrupt status is kept.
+		 */
+		BLOCK,
+
+		/** Discard the new notification. */
+		DROP,
+
+		/**
+		 * Merge the new notification into the last notification in the queue, so listeners
+		 * still receive the latest state of every changed variable.
+		 */
+		COALESCE
+	}
+
+	private final VariableStore variableStore;
+	private final Executor executor;
+	private final int capacity;
+	private final OverflowPolicy overflowPolicy;
+
+	private final Object lock = new Object();
+	private final Deque<List<VariableStoreChange>> queue = new ArrayDeque<>();
+	private boolean running = false;
+	private Thread deliveryThread = null;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link AsyncVariableStoreDispatcher}.
+	 *
+	 * @param variableStore the store whose listeners should be notified
+	 * @param executor the executor that runs the delivery
+	 * @param capacity the maximum number of notifications in the queue
+	 * @param overflowPolicy what to do with a new notification when the queue is full
+	 */
+	AsyncVariableStoreDispatcher(VariableStore variableStore, Executor executor, int capacity,
+			OverflowPolicy overflowPolicy) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		this.variableStore = variableStore;
+		this.executor = executor;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the maximum number of notifications in the queue.
+	 *
+	 * @return the capacity of the queue
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns what happens with a new notification when the queue is full.
+	 *
+	 * @return the overflow policy
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Returns the number of notifications that are waiting in the queue. This does not include a
+	 * notification that is currently being delivered.
+	 *
+	 * @return the queue depth
+	 */
+	public int getQueueDepth() {
+		synchronized (lock) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * Returns the number of notifications that were discarded because the queue was full, with
+	 * policy {@link OverflowPolicy#DROP DROP}.
+	 *
+	 * @return the number of discarded notifications
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of notifications that were merged into a queued notification because the
+	 * queue was full, with policy {@link OverflowPolicy#COALESCE COALESCE}.
+	 *
+	 * @return the number of merged notifications
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Adds a notification with the specified changes to the queue.
+	 *
+	 * @param changes the changes
+	 */
+	void dispatch(List<VariableStoreChange> changes) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				boolean added = false;
+				boolean startDelivery;
+				synchronized (lock) {
+					boolean full = queue.size() >= capacity &&
+							Thread.currentThread() != deliveryThread;
+					if (full && overflowPolicy == OverflowPolicy.DROP) {
+						droppedCount.incrementAndGet();
+						return;
+					}
+					if (full && overflowPolicy == OverflowPolicy.COALESCE) {
+						List<VariableStoreChange> merged = new ArrayList<>(queue.removeLast());
+						merged.addAll(changes);
+						queue.addLast(VariableStore.mergeChanges(merged));
+						coalescedCount.incrementAndGet();
+						return;
+					}
+					if (full && running && !interrupted) {
+						try {
+							lock.wait();
+						} catch (InterruptedException ex) {
+							interrupted = true;
+						}
+						continue;
+					}
+					// if the queue is full and nothing delivers it, restart the delivery first
+					// and then wait again, unless this thread was interrupted
+					if (!full || interrupted) {
+						queue.addLast(changes);
+						added = true;
+					}
+					startDelivery = !running;
+					running = true;
+				}
+				if (startDelivery)
+					startDelivery();
+				if (added)
+					return;
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private void startDelivery() {
+		try {
+			executor.execute(this::deliver);
+		} catch (RejectedExecutionException ex) {
+			logger.warn("Executor rejected delivery of variable store changes, " +
+					"delivering on the calling thread: " + ex.getMessage());
+			deliver();
+		}
+	}
+
+	private void deliver() {
+		synchronized (lock) {
+			deliveryThread = Thread.currentThread();
+		}
+		boolean completed = false;
+		try {
+			while (true) {
+				List<VariableStoreChange> changes;
+				synchronized (lock) {
+					changes = queue.pollFirst();
+					if (changes == null) {
+						running = false;
+						completed = true;
+						return;
+					}
+					lock.notifyAll();
+				}
+				try {
+					variableStore.deliverOnChange(changes);
+				} catch (RuntimeException ex) {
+					logger.error("Error in variable store listener: " + ex.getMessage(), ex);
+				}
+			}
+		} finally {
+			synchronized (lock) {
+				deliveryThread = null;
+				if (!completed) {
+					running = false;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+}
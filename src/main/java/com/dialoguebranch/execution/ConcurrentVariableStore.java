@@ -0,0 +1,335 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.execution;
+
+import java.time.ZonedDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ConcurrentVariableStore} is a {@link VariableStore} for stores that are accessed by
+ * multiple threads at the same time, for example by dialogue execution, variable updates from a
+ * web service and external variable synchronisation for the same user.
+ *
+ * <p>The variables are stored in a {@link ConcurrentHashMap} and no operation takes the store
+ * lock. Listeners are always notified after the change has been made, without holding any lock,
+ * so a listener can safely read or modify the store.</p>
+ *
+ * <p>Every modification increments a version number. {@link #getVariables()} and the {@code
+ * values()} and {@code entrySet()} views of the modifiable map are built from a snapshot array
+ * that is cached until the next modification, so repeated reads without changes do not copy the
+ * map again. A snapshot is only cached if no modification completed while it was built.</p>
+ *
+ * <p>Compound operations such as {@link #addAll(Map, boolean, ZonedDateTime,
+ * VariableStoreChange.Source) addAll()} are not atomic with respect to concurrent readers: a
+ * reader may see some of the new variables before the others.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ConcurrentVariableStore extends VariableStore {
+
+	private final Map<String, Variable> variables = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+	private volatile Snapshot snapshot = null;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link ConcurrentVariableStore} for a given {@link User}.
+	 *
+	 * @param user the {@link User} associated with this store
+	 */
+	public ConcurrentVariableStore(User user) {
+		super(user);
+	}
+
+	/**
+	 * Creates an instance of a new {@link ConcurrentVariableStore} for the given {@code user},
+	 * initialized with the given array of {@link Variable}s.
+	 *
+	 * @param user the {@link User} associated with this store
+	 * @param variableArray the array of variables used to initiate this store
+	 */
+	public ConcurrentVariableStore(User user, Variable[] variableArray) {
+		super(user);
+		for (Variable variable : variableArray) {
+			variables.put(variable.getName(), variable);
+		}
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Retrieval Methods --------------------
+	// -----------------------------------------------------------
+
+	@Override
+	public Variable getVariable(String name) {
+		return variables.get(name);
+	}
+
+	@Override
+	public Variable[] getVariables() {
+		return getSnapshot().clone();
+	}
+
+	@Override
+	public Object getValue(String variableName) {
+		return readValue(variableName);
+	}
+
+	@Override
+	public Set<String> getVariableNames() {
+		return variables.keySet();
+	}
+
+	@Override
+	public List<String> getSortedVariableNames() {
+		List<String> nameList = new ArrayList<>(variables.keySet());
+		Collections.sort(nameList);
+		return nameList;
+	}
+
+	/**
+	 * Returns the current snapshot of the variables. The returned array should not be modified.
+	 *
+	 * @return the snapshot of the variables
+	 */
+	private Variable[] getSnapshot() {
+		Snapshot current = snapshot;
+		long currentVersion = version.get();
+		if (current != null && current.version == currentVersion)
+			return current.variables;
+		Variable[] result = variables.values().toArray(new Variable[0]);
+		if (version.get() == currentVersion)
+			snapshot = new Snapshot(currentVersion, result);
+		return result;
+	}
+
+	// --------------------------------------------------------------
+	// -------------------- Modification Methods --------------------
+	// --------------------------------------------------------------
+
+	@Override
+	public void setValue(String name, Object value, boolean notifyObservers,
+			ZonedDateTime eventTime, VariableStoreChange.Source source) {
+		Variable variable = new Variable(name, value, eventTime);
+		writeVariable(variable);
+		if (notifyObservers)
+			notifyOnChange(new VariableStoreChange.Put(variable, eventTime, source));
+	}
+
+	@Override
+	public Variable removeByName(String name, boolean notifyObservers, ZonedDateTime eventTime,
+			VariableStoreChange.Source source) {
+		Variable result = deleteVariable(name);
+		if (result != null && notifyObservers)
+			notifyOnChange(new VariableStoreChange.Remove(name, eventTime, source));
+		return result;
+	}
+
+	@Override
+	public void addAll(Map<? extends String, ?> variablesToAdd, boolean notifyObservers,
+			ZonedDateTime eventTime, VariableStoreChange.Source source) {
+		List<Variable> added = new ArrayList<>();
+		for (Map.Entry<? extends String, ?> entry : variablesToAdd.entrySet()) {
+			added.add(new Variable(entry.getKey(), entry.getValue(), eventTime));
+		}
+		for (Variable variable : added) {
+			variables.put(variable.getName(), variable);
+		}
+		version.incrementAndGet();
+		if (notifyObservers)
+			notifyOnChange(new VariableStoreChange.Put(added, eventTime, source));
+	}
+
+	// -----------------------------------------------------------
+	// --------------------- Storage Methods ---------------------
+	// -----------------------------------------------------------
+
+	@Override
+	protected Variable readVariable(String name) {
+		return variables.get(name);
+	}
+
+	@Override
+	protected Object readValue(String name) {
+		Variable variable = variables.get(name);
+		return variable == null ? null : variable.getValue();
+	}
+
+	@Override
+	protected boolean containsVariable(String name) {
+		return variables.containsKey(name);
+	}
+
+	@Override
+	protected Collection<Variable> readAllVariables() {
+		return Arrays.asList(getSnapshot());
+	}
+
+	@Override
+	protected Set<String> readVariableNames() {
+		return variables.keySet();
+	}
+
+	@Override
+	protected int countVariables() {
+		return variables.size();
+	}
+
+	@Override
+	protected void writeVariable(Variable variable) {
+		variables.put(variable.getName(), variable);
+		version.incrementAndGet();
+	}
+
+	@Override
+	protected Variable deleteVariable(String name) {
+		Variable result = variables.remove(name);
+		if (result != null)
+			version.incrementAndGet();
+		return result;
+	}
+
+	@Override
+	protected void deleteAllVariables() {
+		variables.clear();
+		version.incrementAndGet();
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	@Override
+	public Map<String, Object> getModifiableMap(boolean notifyObservers, ZonedDateTime eventTime,
+			VariableStoreChange.Source source) {
+		return new ConcurrentVariableMap(notifyObservers, eventTime, source);
+	}
+
+	private record Snapshot(long version, Variable[] variables) {
+	}
+
+	/**
+	 * A {@link VariableMap} that accesses the variables without taking the store lock.
+	 */
+	protected class ConcurrentVariableMap extends VariableMap {
+
+		public ConcurrentVariableMap(boolean notifyObservers, ZonedDateTime eventTime,
+				VariableStoreChange.Source source) {
+			super(notifyObservers, eventTime, source);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			Variable variable = new Variable(key, value, eventTime);
+			Variable result = variables.put(key, variable);
+			version.incrementAndGet();
+			if (notifyObservers)
+				notifyOnChange(new VariableStoreChange.Put(variable, eventTime, source));
+			return result == null ? null : result.getValue();
+		}
+
+		@Override
+		public void clear() {
+			deleteAllVariables();
+			if (notifyObservers)
+				notifyOnChange(new VariableStoreChange.Clear(eventTime, source));
+		}
+
+		@Override
+		public int size() {
+			return variables.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return variables.isEmpty();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof String && variables.containsKey(key);
+		}
+
+		@Override
+		public Object get(Object key) {
+			if (!(key instanceof String))
+				return null;
+			Variable variable = variables.get(key);
+			return variable == null ? null : variable.getValue();
+		}
+
+		@Override
+		public boolean containsValue(Object value) {
+			for (Variable variable : variables.values()) {
+				if (Objects.equals(variable.getValue(), value))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return variables.keySet();
+		}
+
+		@Override
+		public Collection<Object> values() {
+			Variable[] current = getSnapshot();
+			List<Object> result = new ArrayList<>(current.length);
+			for (Variable variable : current) {
+				result.add(variable.getValue());
+			}
+			return result;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			Variable[] current = getSnapshot();
+			Set<Entry<String, Object>> result = new HashSet<>();
+			for (Variable variable : current) {
+				result.add(new AbstractMap.SimpleEntry<>(variable.getName(),
+						variable.getValue()));
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.execution;
+
+import com.dialoguebranch.model.FileDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link DialogueSessionManager} keeps the {@link ActiveDialogue}s of many users in memory, with
+ * one session per user and dialogue. It takes care of the locking and memory management that
+ * every service that runs dialogues needs:
+ *
+ * <ul>
+ *   <li>All access to a session goes through {@link #execute(String, FileDescriptor,
+ *   SessionAction) execute()}, which runs one action at a time per session. Actions on
+ *   different sessions run in parallel.</li>
+ *   <li>Sessions that have not been used for longer than the idle timeout, and the least recently
+ *   used sessions when there are more sessions than the maximum, are evicted. Before a session
+ *   is evicted, it is passed to the {@link PassivationHandler}, so it can be saved.</li>
+ *   <li>When an evicted session is used again, the {@link PassivationHandler} is asked to
+ *   restore it.</li>
+ * </ul>
+ *
+ * <p>Sessions are locked with a {@link ReentrantLock} rather than a monitor, so a virtual thread
+ * that waits for a session does not pin its carrier thread. Eviction runs in a periodic task on a
+ * {@link ScheduledExecutorService} (see {@link #start(ScheduledExecutorService, Duration)
+ * start()}), or when {@link #evict()} is called. When a new session exceeds the maximum, an extra
+ * run is submitted to the same scheduler, so the request that created the session does not have to
+ * wait for it. Only if the periodic task has not been started, the sessions are evicted on the
+ * calling thread. A session that is in use is never evicted.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class DialogueSessionManager implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DialogueSessionManager.class);
+
+	private final Map<SessionKey, DialogueSession> sessions = new ConcurrentHashMap<>();
+	private final Duration idleTimeout;
+	private final int maxSessions;
+	private final PassivationHandler passivationHandler;
+
+	private final ReentrantLock evictLock = new ReentrantLock();
+	private ScheduledFuture<?> evictTask = null;
+	private volatile ScheduledExecutorService evictScheduler = null;
+	private final AtomicBoolean evictPending = new AtomicBoolean(false);
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link DialogueSessionManager}.
+	 *
+	 * @param idleTimeout the time after which an unused session is evicted, or null if sessions
+	 *                    should not be evicted based on time
+	 * @param maxSessions the maximum number of sessions in memory, or 0 if there is no maximum
+	 * @param passivationHandler the handler that saves evicted sessions and restores them, or
+	 *                           null if evicted sessions should be discarded
+	 */
+	public DialogueSessionManager(Duration idleTimeout, int maxSessions,
+			PassivationHandler passivationHandler) {
+		this.idleTimeout = idleTimeout;
+		this.maxSessions = maxSessions;
+		this.passivationHandler = passivationHandler;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the number of sessions in memory.
+	 *
+	 * @return the number of sessions in memory
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * Returns true if a session for the specified user and dialogue is in memory. This does not
+	 * ask the {@link PassivationHandler}.
+	 *
+	 * @param userId the user ID
+	 * @param dialogue the dialogue
+	 * @return true if the session is in memory, false otherwise
+	 */
+	public boolean contains(String userId, FileDescriptor dialogue) {
+		return sessions.containsKey(new SessionKey(userId, dialogue));
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Runs the specified action on the session for the specified user and dialogue. If the
+	 * session is not in memory, a new session is created, and the {@link PassivationHandler} is
+	 * asked to restore the active dialogue. If there is no saved active dialogue, then {@link
+	 * DialogueSession#getActiveDialogue()} returns null, and the action can start a new dialogue
+	 * with {@link DialogueSession#setActiveDialogue(ActiveDialogue) setActiveDialogue()}.
+	 *
+	 * <p>The action has exclusive access to the session until it returns. If another action is
+	 * running on the same session, this method waits for it to finish.</p>
+	 *
+	 * @param userId the user ID
+	 * @param dialogue the dialogue
+	 * @param action the action
+	 * @param <T> the type of the result of the action
+	 * @param <E> the type of exception that the action can throw
+	 * @return the result of the action
+	 * @throws E if the action throws an exception
+	 */
+	public <T, E extends Exception> T execute(String userId, FileDescriptor dialogue,
+			SessionAction<T,E> action) throws E {
+		SessionKey key = new SessionKey(userId, dialogue);
+		while (true) {
+			boolean[] created = new boolean[1];
+			DialogueSession session = sessions.computeIfAbsent(key, k -> {
+				created[0] = true;
+				return new DialogueSession(k, passivationHandler != null);
+			});
+			session.lock.lock();
+			try {
+				if (session.evicted)
+					continue;
+				if (!session.restored) {
+					// if activate() fails, the session is restored again by the next action
+					if (passivationHandler != null && session.activeDialogue == null)
+						session.setActiveDialogue(passivationHandler.activate(key));
+					session.restored = true;
+				}
+				session.lastAccess = System.nanoTime();
+				try {
+					return action.run(session);
+				} finally {
+					session.lastAccess = System.nanoTime();
+				}
+			} finally {
+				session.lock.unlock();
+				if (created[0] && maxSessions > 0 && sessions.size() > maxSessions)
+					requestEvict();
+			}
+		}
+	}
+
+	/**
+	 * Removes the session for the specified user and dialogue, for example when the dialogue
+	 * has finished. The session is not passed to the {@link PassivationHandler}. If an action is
+	 * running on the session, this method waits for it to finish.
+	 *
+	 * @param userId the user ID
+	 * @param dialogue the dialogue
+	 * @return the active dialogue of the removed session, or null
+	 */
+	public ActiveDialogue remove(String userId, FileDescriptor dialogue) {
+		DialogueSession session = sessions.get(new SessionKey(userId, dialogue));
+		if (session == null)
+			return null;
+		session.lock.lock();
+		try {
+			if (session.evicted)
+				return null;
+			session.evicted = true;
+			sessions.remove(session.key, session);
+			return session.activeDialogue;
+		} finally {
+			session.lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts a periodic task that evicts idle sessions and sessions above the maximum.
+	 *
+	 * @param scheduler the scheduler that runs the task
+	 * @param interval the interval between runs
+	 */
+	public void start(ScheduledExecutorService scheduler, Duration interval) {
+		evictLock.lock();
+		try {
+			if (evictTask != null)
+				evictTask.cancel(false);
+			long millis = interval.toMillis();
+			evictTask = scheduler.scheduleWithFixedDelay(this::runEvictTask, millis, millis,
+					TimeUnit.MILLISECONDS);
+			evictScheduler = scheduler;
+		} finally {
+			evictLock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the periodic eviction task, if it was started. The sessions stay in memory.
+	 */
+	@Override
+	public void close() {
+		evictLock.lock();
+		try {
+			if (evictTask != null)
+				evictTask.cancel(false);
+			evictTask = null;
+			evictScheduler = null;
+		} finally {
+			evictLock.unlock();
+		}
+	}
+
+	/**
+	 * Submits an eviction run to the scheduler of the periodic task, unless a run is already
+	 * pending. If the periodic task has not been started, or the scheduler rejects the run, the
+	 * sessions are evicted on the calling thread.
+	 */
+	private void requestEvict() {
+		ScheduledExecutorService scheduler = evictScheduler;
+		if (scheduler == null) {
+			evict();
+			return;
+		}
+		if (!evictPending.compareAndSet(false, true))
+			return;
+		try {
+			scheduler.execute(() -> {
+				evictPending.set(false);
+				runEvictTask();
+			});
+		} catch (RejectedExecutionException ex) {
+			evictPending.set(false);
+			evict();
+		}
+	}
+
+	private void runEvictTask() {
+		try {
+			evict();
+		} catch (RuntimeException ex) {
+			logger.error("Error while evicting dialogue sessions: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Evicts all sessions that have been idle for longer than the idle timeout, and then, if
+	 * there are more sessions than the maximum, the least recently used sessions until the number
+	 * of sessions is 10% below the maximum. This margin avoids that every new session causes
+	 * another eviction run. Sessions that are in use are skipped, and so are sessions that the
+	 * {@link PassivationHandler} fails to save.
+	 *
+	 * @return the number of evicted sessions
+	 */
+	public int evict() {
+		evictLock.lock();
+		try {
+			int count = 0;
+			long now = System.nanoTime();
+			if (idleTimeout != null) {
+				long timeout = idleTimeout.toNanos();
+				for (DialogueSession session : sessions.values()) {
+					if (now - session.lastAccess > timeout && evictSession(session))
+						count++;
+				}
+			}
+			int excess = 0;
+			if (maxSessions > 0 && sessions.size() > maxSessions)
+				excess = sessions.size() - (maxSessions - maxSessions / 10);
+			if (excess > 0) {
+				List<DialogueSession> sorted = new ArrayList<>(sessions.values());
+				sorted.sort(Comparator.comparingLong(session -> session.lastAccess));
+				for (DialogueSession session : sorted) {
+					if (excess <= 0)
+						break;
+					if (evictSession(session)) {
+						count++;
+						excess--;
+					}
+				}
+			}
+			return count;
+		} finally {
+			evictLock.unlock();
+		}
+	}
+
+	private boolean evictSession(DialogueSession session) {
+		if (!session.lock.tryLock())
+			return false;
+		try {
+			if (session.evicted)
+				return false;
+			session.evicted = true;
+			// passivate before removal, so a new session for the same key can only be created
+			// and activated after the session has been saved
+			if (passivationHandler != null && session.activeDialogue != null) {
+				try {
+					passivationHandler.passivate(session.key, session.activeDialogue);
+				} catch (RuntimeException ex) {
+					// keep the session, so the active dialogue is not lost
+					logger.error("Failed to passivate dialogue session " + session.key +
+							": " + ex.getMessage(), ex);
+					session.evicted = false;
+					return false;
+				}
+			}
+			sessions.remove(session.key, session);
+			return true;
+		} finally {
+			session.lock.unlock();
+		}
+	}
+
+	/**
+	 * The key of a session: a user and a dialogue.
+	 *
+	 * @param userId the user ID
+	 * @param dialogue the dialogue
+	 */
+	public record SessionKey(String userId, FileDescriptor dialogue) {
+	}
+
+	/**
+	 * A session of one user in one dialogue. It is only accessible within a {@link
+	 * SessionAction}.
+	 */
+	public static class DialogueSession {
+		private final SessionKey key;
+		// true if the active dialogue should keep node input for passivation
+		private final boolean captureNodeInput;
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile long lastAccess = System.nanoTime();
+		private boolean evicted = false;
+		private boolean restored = false;
+		private ActiveDialogue activeDialogue = null;
+
+		private DialogueSession(SessionKey key, boolean captureNodeInput) {
+			this.key = key;
+			this.captureNodeInput = captureNodeInput;
+		}
+
+		/**
+		 * Returns the key of this session.
+		 *
+		 * @return the key of this session
+		 */
+		public SessionKey getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the active dialogue of this session, or null if no dialogue has been started.
+		 *
+		 * @return the active dialogue or null
+		 */
+		public ActiveDialogue getActiveDialogue() {
+			return activeDialogue;
+		}
+
+		/**
+		 * Sets the active dialogue of this session. If the manager has a {@link
+		 * PassivationHandler}, this enables {@link ActiveDialogue#setCaptureNodeInput(boolean)
+		 * setCaptureNodeInput()} on the active dialogue, so it can be passivated.
+		 *
+		 * @param activeDialogue the active dialogue or null
+		 */
+		public void setActiveDialogue(ActiveDialogue activeDialogue) {
+			if (activeDialogue != null && captureNodeInput)
+				activeDialogue.setCaptureNodeInput(true);
+			this.activeDialogue = activeDialogue;
+		}
+	}
+
+	/**
+	 * An action that runs on a session with exclusive access.
+	 *
+	 * @param <T> the type of the result
+	 * @param <E> the type of exception that the action can throw
+	 */
+	public interface SessionAction<T, E extends Exception> {
+
+		/**
+		 * Runs the action.
+		 *
+		 * @param session the session
+		 * @return the result
+		 * @throws E if the action fails
+		 */
+		T run(DialogueSession session) throws E;
+	}
+
+	/**
+	 * A handler that saves sessions when they are evicted, and restores them when they are used
+	 * again.
+	 */
+	public interface PassivationHandler {
+
+		/**
+		 * Saves the active dialogue of a session that is evicted. This is called while the
+		 * session is locked, so it should be fast.
+		 *
+		 * @param key the session key
+		 * @param activeDialogue the active dialogue
+		 */
+		void passivate(SessionKey key, ActiveDialogue activeDialogue);
+
+		/**
+		 * Restores the active dialogue of a session that was evicted. This is called when the
+		 * session is used again and is no longer in memory. It should return null if there is
+		 * no saved dialogue for the session. If it throws a runtime exception, the exception is
+		 * thrown to the caller of {@link DialogueSessionManager#execute(String, FileDescriptor,
+		 * SessionAction) execute()} without running the action, and the next action on the
+		 * session will call this method again.
+		 *
+		 * @param key the session key
+		 * @return the active dialogue or null
+		 */
+		ActiveDialogue activate(SessionKey key);
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.execution;
+
+import com.dialoguebranch.model.Node;
+import com.dialoguebranch.model.NodeBody;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link NodeRenderCache} keeps executed nodes, so that a node that is free of side effects
+ * does not have to be executed again when it is reached with the same variable values. It can
+ * be set on an {@link ActiveDialogue} with {@link ActiveDialogue#setRenderCache(NodeRenderCache)
+ * ActiveDialogue.setRenderCache()}, and the same cache can be shared by the active dialogues of
+ * all users.
+ *
+ * <p>The result of executing a node that is free of side effects (see {@link
+ * NodeBody#isSideEffectFree()}) only depends on the values of the variables that it reads (see
+ * {@link NodeBody#getReadVariableNames()}). Therefore the cache key consists of the node, the
+ * language and the values of those variables. The node is compared by identity, so a reloaded
+ * or retranslated node gets new entries. Only frozen nodes are cached, and only if all values
+ * are null, strings, booleans or numbers, because other values might be modified after they were
+ * added to a key.</p>
+ *
+ * <p>The cache has a maximum size, and when it is full, the least recently used node is removed.
+ * The returned nodes are frozen and shared by all callers. This class is thread-safe.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class NodeRenderCache {
+
+	/** The default maximum number of executed nodes in the cache. */
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	private final Map<Key,Node> entries;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link NodeRenderCache}.
+	 *
+	 * @param maxSize the maximum number of executed nodes in the cache
+	 */
+	public NodeRenderCache(int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+		entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,Node> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Creates the cache key for the specified node and the values of the variables that it reads.
+	 * If the node cannot be cached, because it is not frozen, it has side effects, or any of the
+	 * values is not a null, string, boolean or number, this method returns null.
+	 *
+	 * @param language the language of the dialogue that contains the node
+	 * @param node the source node
+	 * @param values the values of the variables that are read by the node, in the order of
+	 *               {@link NodeBody#getReadVariableNames()}
+	 * @return the key or null
+	 */
+	public Key createKey(String language, Node node, Object[] values) {
+		if (!node.isFrozen() || !node.getBody().isSideEffectFree())
+			return null;
+		for (Object value : values) {
+			if (!isImmutableValue(value))
+				return null;
+		}
+		return new Key(language, node, values.clone());
+	}
+
+	/**
+	 * Returns the executed node for the specified key, or null if it is not in the cache.
+	 *
+	 * @param key the key (see {@link #createKey(String, Node, Object[]) createKey()})
+	 * @return the executed node or null
+	 */
+	public synchronized Node get(Key key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Adds an executed node to the cache. The node is frozen if it wasn't already.
+	 *
+	 * @param key the key (see {@link #createKey(String, Node, Object[]) createKey()})
+	 * @param processedNode the executed node
+	 */
+	public void put(Key key, Node processedNode) {
+		processedNode.freeze();
+		synchronized (this) {
+			entries.put(key, processedNode);
+		}
+	}
+
+	/**
+	 * Removes all nodes from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of executed nodes in the cache.
+	 *
+	 * @return the number of executed nodes in the cache
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static boolean isImmutableValue(Object value) {
+		return value == null || value instanceof String || value instanceof Boolean ||
+				value instanceof Integer || value instanceof Long ||
+				value instanceof Double || value instanceof Float ||
+				value instanceof Short || value instanceof Byte;
+	}
+
+	/**
+	 * The key of an executed node in a {@link NodeRenderCache}. It is created with {@link
+	 * NodeRenderCache#createKey(String, Node, Object[]) createKey()}. The source node is compared
+	 * by identity and the hash code of the variable values is computed only once.
+	 */
+	public static final class Key {
+		private final String language;
+		private final Node node;
+		private final Object[] values;
+		private final int hashCode;
+
+		private Key(String language, Node node, Object[] values) {
+			this.language = language;
+			this.node = node;
+			this.values = values;
+			int hash = System.identityHashCode(node);
+			hash = 31 * hash + (language == null ? 0 : language.hashCode());
+			hashCode = 31 * hash + Arrays.hashCode(values);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key other))
+				return false;
+			return node == other.node && hashCode == other.hashCode &&
+					(language == null ? other.language == null :
+					language.equals(other.language)) &&
+					Arrays.equals(values, other.values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
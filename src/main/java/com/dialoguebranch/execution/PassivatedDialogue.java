@@ -0,0 +1,402 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.execution;
+
+import com.dialoguebranch.exception.ExecutionException;
+import com.dialoguebranch.model.Dialogue;
+import com.dialoguebranch.model.FileDescriptor;
+import com.dialoguebranch.model.FileType;
+import com.dialoguebranch.model.Node;
+import com.dialoguebranch.model.NodeBody;
+import com.dialoguebranch.model.BaseProject;
+import com.dialoguebranch.model.Reply;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.rrd.utils.expressions.EvaluationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link PassivatedDialogue} is a compact representation of the state of an {@link
+ * ActiveDialogue}, so that idle sessions can be stored in a small byte array, for example by a
+ * {@link DialogueSessionManager.PassivationHandler}. It contains:
+ *
+ * <ul>
+ *   <li>the {@link FileDescriptor} of the dialogue</li>
+ *   <li>the ID of the current node, or null</li>
+ *   <li>the IDs of the replies that were offered in the current node</li>
+ *   <li>the values that the variables read by the current node had when it was executed</li>
+ * </ul>
+ *
+ * <p>It does not contain the dialogue definition or the variable store. When the dialogue is
+ * restored, the {@link ActiveDialogue} is bound to the shared {@link Dialogue} definition and to
+ * the variable store of the user. The current node is executed again on the saved variable
+ * values, without changing the variable store, and the reply options are restored by their IDs.
+ * The result is the same as the original executed node, except that a "random" command may pick
+ * a different text. The reply options are always the same.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class PassivatedDialogue {
+
+	private static final Logger logger = LoggerFactory.getLogger(PassivatedDialogue.class);
+
+	private static final int FORMAT_VERSION = 2;
+
+	private static final int TYPE_NULL = 0;
+	private static final int TYPE_TRUE = 1;
+	private static final int TYPE_FALSE = 2;
+	private static final int TYPE_INT = 3;
+	private static final int TYPE_LONG = 4;
+	private static final int TYPE_DOUBLE = 5;
+	private static final int TYPE_STRING = 6;
+	private static final int TYPE_JSON = 7;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final FileDescriptor dialogueDescription;
+	private final String nodeId;
+	private final int[] replyIds;
+	private final Map<String,Object> nodeInput;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link PassivatedDialogue}.
+	 *
+	 * @param dialogueDescription the description of the dialogue
+	 * @param nodeId the ID of the current node, or null
+	 * @param replyIds the IDs of the replies in the current node
+	 * @param nodeInput the values of the variables that were read by the current node
+	 */
+	public PassivatedDialogue(FileDescriptor dialogueDescription, String nodeId, int[] replyIds,
+			Map<String,Object> nodeInput) {
+		this.dialogueDescription = dialogueDescription;
+		this.nodeId = nodeId;
+		this.replyIds = replyIds;
+		this.nodeInput = nodeInput;
+	}
+
+	/**
+	 * Creates a {@link PassivatedDialogue} from the specified active dialogue. If the active
+	 * dialogue did not keep the input values of the current node (see {@link
+	 * ActiveDialogue#setCaptureNodeInput(boolean) setCaptureNodeInput()}), they are read from the
+	 * variable store.
+	 *
+	 * @param activeDialogue the active dialogue
+	 * @return the passivated dialogue
+	 */
+	public static PassivatedDialogue passivate(ActiveDialogue activeDialogue) {
+		Node current = activeDialogue.getCurrentNode();
+		if (current == null) {
+			return new PassivatedDialogue(activeDialogue.getDialogueFileDescription(), null,
+					new int[0], Collections.emptyMap());
+		}
+		int[] replyIds = current.getBody().getReplies().stream()
+				.mapToInt(Reply::getReplyId)
+				.toArray();
+		Map<String,Object> input = activeDialogue.getCurrentNodeInput();
+		if (input == null) {
+			input = new LinkedHashMap<>();
+			Node source = activeDialogue.getDialogueDefinition().getNodeById(
+					current.getTitle());
+			VariableStore store = activeDialogue.getVariableStore();
+			if (source != null && store != null) {
+				for (String name : source.getBody().getCompiledBody()
+						.getReadVariableNames()) {
+					input.put(name, store.getValue(name));
+				}
+			}
+		}
+		return new PassivatedDialogue(activeDialogue.getDialogueFileDescription(),
+				current.getTitle(), replyIds, input);
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the description of the dialogue.
+	 *
+	 * @return the description of the dialogue
+	 */
+	public FileDescriptor getDialogueDescription() {
+		return dialogueDescription;
+	}
+
+	/**
+	 * Returns the ID of the current node, or null if there is no current node.
+	 *
+	 * @return the ID of the current node or null
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Returns the IDs of the replies in the current node.
+	 *
+	 * @return the reply IDs
+	 */
+	public int[] getReplyIds() {
+		return replyIds;
+	}
+
+	/**
+	 * Returns the values of the variables that were read by the current node when it was
+	 * executed.
+	 *
+	 * @return the input values of the current node
+	 */
+	public Map<String,Object> getNodeInput() {
+		return nodeInput;
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Restores the active dialogue with the dialogue definition from the specified project. See
+	 * {@link #restore(Dialogue, VariableStore)}.
+	 *
+	 * @param project the project
+	 * @param variableStore the variable store of the user
+	 * @return the active dialogue
+	 * @throws ExecutionException if the dialogue or the current node is not found
+	 * @throws EvaluationException if an expression in the current node cannot be evaluated
+	 */
+	public ActiveDialogue restore(BaseProject project, VariableStore variableStore)
+			throws ExecutionException, EvaluationException {
+		Dialogue dialogue = project.getDialogues().get(dialogueDescription);
+		if (dialogue == null) {
+			throw new ExecutionException(ExecutionException.Type.DIALOGUE_NOT_FOUND,
+					"Dialogue not found: " + dialogueDescription);
+		}
+		return restore(dialogue, variableStore);
+	}
+
+	/**
+	 * Restores the active dialogue. It is bound to the specified dialogue definition and variable
+	 * store. The current node is executed on the saved input values, which does not change the
+	 * variable store.
+	 *
+	 * @param dialogueDefinition the dialogue definition
+	 * @param variableStore the variable store of the user
+	 * @return the active dialogue
+	 * @throws ExecutionException if the current node is not found
+	 * @throws EvaluationException if an expression in the current node cannot be evaluated
+	 */
+	public ActiveDialogue restore(Dialogue dialogueDefinition, VariableStore variableStore)
+			throws ExecutionException, EvaluationException {
+		ActiveDialogue result = new ActiveDialogue(dialogueDescription, dialogueDefinition);
+		result.setVariableStore(variableStore);
+		if (nodeId == null)
+			return result;
+		Node node = dialogueDefinition.getNodeById(nodeId);
+		if (node == null) {
+			throw new ExecutionException(ExecutionException.Type.NODE_NOT_FOUND,
+					String.format("Node \"%s\" not found in dialogue \"%s\"", nodeId,
+					dialogueDefinition.getDialogueName()));
+		}
+		Map<String,Object> variables = new VariableOverlayMap(nodeInput);
+		NodeBody executedBody = new NodeBody();
+		node.getBody().execute(variables, true, executedBody);
+		NodeBody processedBody = new NodeBody();
+		for (NodeBody.Segment segment : executedBody.getSegments()) {
+			processedBody.addSegment(segment);
+		}
+		for (int replyId : replyIds) {
+			Reply reply = executedBody.findReplyById(replyId);
+			if (reply == null) {
+				Reply source = node.getBody().findReplyById(replyId);
+				if (source == null) {
+					logger.warn("Reply {} not found in node \"{}\" of dialogue \"{}\"",
+							replyId, nodeId, dialogueDefinition.getDialogueName());
+					continue;
+				}
+				reply = source.execute(variables);
+			}
+			processedBody.addReply(reply);
+		}
+		result.restoreCurrentNode(new Node(node.getHeader(), processedBody), nodeInput);
+		return result;
+	}
+
+	/**
+	 * Writes this passivated dialogue to a compact byte array. Variable values that are null,
+	 * booleans, integers, longs, doubles or strings are written in binary form. Other values are
+	 * written as JSON. Strings are written as UTF-8 with a 4-byte length, so they are not limited
+	 * in length.
+	 *
+	 * @return the byte array
+	 * @throws IOException if a variable value cannot be written
+	 */
+	public byte[] toBytes() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			writeString(out, dialogueDescription.getLanguage());
+			writeString(out, dialogueDescription.getFilePath());
+			out.writeByte(dialogueDescription.getFileType().ordinal());
+			out.writeBoolean(nodeId != null);
+			if (nodeId == null)
+				return bytes.toByteArray();
+			writeString(out, nodeId);
+			out.writeInt(replyIds.length);
+			for (int replyId : replyIds) {
+				out.writeInt(replyId);
+			}
+			out.writeInt(nodeInput.size());
+			for (Map.Entry<String,Object> entry : nodeInput.entrySet()) {
+				writeString(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a passivated dialogue from a byte array that was created with {@link #toBytes()}.
+	 *
+	 * @param data the byte array
+	 * @return the passivated dialogue
+	 * @throws IOException if the byte array is invalid
+	 */
+	public static PassivatedDialogue fromBytes(byte[] data) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			int version = in.readUnsignedByte();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported format version: " + version);
+			String language = readString(in);
+			String filePath = readString(in);
+			int fileTypeIndex = in.readUnsignedByte();
+			FileType[] fileTypes = FileType.values();
+			if (fileTypeIndex >= fileTypes.length)
+				throw new IOException("Invalid file type: " + fileTypeIndex);
+			FileDescriptor descriptor = new FileDescriptor(language, filePath,
+					fileTypes[fileTypeIndex]);
+			if (!in.readBoolean()) {
+				return new PassivatedDialogue(descriptor, null, new int[0],
+						Collections.emptyMap());
+			}
+			String nodeId = readString(in);
+			int[] replyIds = new int[readCount(in, 4)];
+			for (int i = 0; i < replyIds.length; i++) {
+				replyIds[i] = in.readInt();
+			}
+			int inputCount = readCount(in, 5);
+			Map<String,Object> input = new LinkedHashMap<>();
+			for (int i = 0; i < inputCount; i++) {
+				String name = readString(in);
+				input.put(name, readValue(in));
+			}
+			return new PassivatedDialogue(descriptor, nodeId, replyIds, input);
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof Boolean bool) {
+			out.writeByte(bool ? TYPE_TRUE : TYPE_FALSE);
+		} else if (value instanceof Integer number) {
+			out.writeByte(TYPE_INT);
+			out.writeInt(number);
+		} else if (value instanceof Long number) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong(number);
+		} else if (value instanceof Double number) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble(number);
+		} else if (value instanceof String string) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, string);
+		} else {
+			out.writeByte(TYPE_JSON);
+			writeString(out, MAPPER.writeValueAsString(value));
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		return switch (type) {
+			case TYPE_NULL -> null;
+			case TYPE_TRUE -> true;
+			case TYPE_FALSE -> false;
+			case TYPE_INT -> in.readInt();
+			case TYPE_LONG -> in.readLong();
+			case TYPE_DOUBLE -> in.readDouble();
+			case TYPE_STRING -> readString(in);
+			case TYPE_JSON -> MAPPER.readValue(readString(in), Object.class);
+			default -> throw new IOException("Invalid value type: " + type);
+		};
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readCount(in, 1)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a length or count that was written with {@link DataOutputStream#writeInt(int)
+	 * writeInt()}, and checks that the remaining data is large enough, so that corrupt data can't
+	 * cause a huge allocation.
+	 *
+	 * @param in the input stream of a byte array
+	 * @param minItemSize the minimum size in bytes of each item
+	 * @return the length or count
+	 * @throws IOException if the value is invalid
+	 */
+	private static int readCount(DataInputStream in, int minItemSize) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || (long)count * minItemSize > in.available())
+			throw new IOException("Invalid length: " + count);
+		return count;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.execution;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link VariableOverlayMap} is a variable map that reads through to an underlying map, such as
+ * the modifiable map of a {@link VariableStore}, but keeps all writes to itself. The underlying
+ * map is never changed. This can be used to execute a node without changing the variables, for
+ * example to preview a node, or to find out what a node would change.
+ *
+ * <p>Creating an overlay map does not copy the underlying map, so the cost of using it depends
+ * on the number of variables that are read or written, not on the size of the underlying map.
+ * Only {@link #size()} and iteration visit the whole underlying map. Changes in the underlying
+ * map are visible in the overlay map unless the variable has been written or removed in the
+ * overlay.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class VariableOverlayMap extends AbstractMap<String,Object> {
+
+	private final Map<String,Object> base;
+	private final Map<String,Object> writes = new LinkedHashMap<>();
+	private final Set<String> removed = new HashSet<>();
+	private boolean cleared = false;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link VariableOverlayMap} on top of the specified map.
+	 *
+	 * @param base the underlying map, which is only read
+	 */
+	public VariableOverlayMap(Map<String,Object> base) {
+		this.base = base;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the variables that were written in this overlay map, in the order they were first
+	 * written.
+	 *
+	 * @return the written variables
+	 */
+	public Map<String,Object> getWrittenVariables() {
+		return Collections.unmodifiableMap(writes);
+	}
+
+	/**
+	 * Returns the names of the variables from the underlying map that were removed in this
+	 * overlay map. If {@link #isCleared()} returns true, all variables from the underlying map
+	 * were removed, and this set is empty.
+	 *
+	 * @return the removed variable names
+	 */
+	public Set<String> getRemovedVariables() {
+		return Collections.unmodifiableSet(removed);
+	}
+
+	/**
+	 * Returns true if {@link #clear()} was called, so none of the variables from the underlying
+	 * map are visible anymore.
+	 *
+	 * @return true if the overlay map was cleared
+	 */
+	public boolean isCleared() {
+		return cleared;
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	private boolean isHidden(Object key) {
+		return cleared || removed.contains(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (writes.containsKey(key))
+			return writes.get(key);
+		if (isHidden(key))
+			return null;
+		return base.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (writes.containsKey(key))
+			return true;
+		if (isHidden(key))
+			return false;
+		return base.containsKey(key);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		Object result = get(key);
+		writes.put(key, value);
+		return result;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Object result = get(key);
+		writes.remove(key);
+		if (!cleared && key instanceof String name && base.containsKey(name))
+			removed.add(name);
+		return result;
+	}
+
+	@Override
+	public void clear() {
+		writes.clear();
+		removed.clear();
+		cleared = true;
+	}
+
+	@Override
+	public int size() {
+		int size = writes.size();
+		if (cleared)
+			return size;
+		for (String key : base.keySet()) {
+			if (!writes.containsKey(key) && !removed.contains(key))
+				size++;
+		}
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Set<Entry<String,Object>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Entry<String,Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return VariableOverlayMap.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Iterates over the visible entries from the underlying map, followed by the written entries.
+	 */
+	private class EntryIterator implements Iterator<Entry<String,Object>> {
+		private final Iterator<Entry<String,Object>> baseIt;
+		private final Iterator<Entry<String,Object>> writesIt;
+		private Entry<String,Object> next = null;
+		private String lastKey = null;
+
+		private EntryIterator() {
+			baseIt = cleared ? Collections.emptyIterator() :
+					base.entrySet().iterator();
+			writesIt = new LinkedHashMap<>(writes).entrySet().iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && baseIt.hasNext()) {
+				Entry<String,Object> entry = baseIt.next();
+				String key = entry.getKey();
+				if (!writes.containsKey(key) && !removed.contains(key))
+					next = entry;
+			}
+			if (next == null && writesIt.hasNext())
+				next = writesIt.next();
+			return next != null;
+		}
+
+		@Override
+		public Entry<String,Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry<String,Object> result = new SimpleEntry<>(next.getKey(), next.getValue());
+			lastKey = result.getKey();
+			next = null;
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			if (lastKey == null)
+				throw new IllegalStateException();
+			VariableOverlayMap.this.remove(lastKey);
+			lastKey = null;
+		}
+	}
+}
@@ -29,6 +29,8 @@ package com.dialoguebranch.execution;
 
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * A {@link VariableStore} is an object that stores all Dialogue Branch variable values for a given
@@ -41,11 +43,24 @@ public class VariableStore {
 	/** Contains the list of all Variables in this store. */
 	private final Map<String, Variable> variables = new HashMap<>();
 
+	/**
+	 * The lock that guards the stored variables. The storage methods (see "Storage Methods") are
+	 * always called while holding this lock.
+	 */
+	protected final Object lock = new Object();
+
 	/** The Dialogue Branch user associated with this VariableStore. */
 	private User user;
 
 	/** Contains the list of all listeners that need to be notified for updates. */
-	private final List<VariableStoreOnChangeListener> onChangeListeners = new ArrayList<>();
+	private final List<VariableStoreOnChangeListener> onChangeListeners =
+			new CopyOnWriteArrayList<>();
+
+	/** The dispatcher that notifies the listeners asynchronously, or null. */
+	private volatile AsyncVariableStoreDispatcher asyncDispatcher = null;
+
+	/** The batch that is active in the current thread, if any (see {@link #beginBatch()}). */
+	private final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
 
 	// --------------------------------------------------------
 	// -------------------- Constructor(s) --------------------
@@ -69,7 +84,7 @@ public class VariableStore {
 	 */
 	public VariableStore(User user, Variable[] variableArray) {
 		this.user = user;
-		synchronized(variables) {
+		synchronized (lock) {
 			for (Variable variable : variableArray) {
 				variables.put(variable.getName(),variable);
 			}
@@ -88,9 +103,7 @@ public class VariableStore {
 	 *                 {@link VariableStore} is changed
 	 */
 	public void addOnChangeListener(VariableStoreOnChangeListener listener) {
-		synchronized (onChangeListeners) {
-			onChangeListeners.add(listener);
-		}
+		onChangeListeners.add(listener);
 	}
 
 	/**
@@ -103,29 +116,88 @@ public class VariableStore {
 	 *         {@code false} otherwise (e.g. if it was not registered as a listener to begin with).
 	 */
 	public boolean removeOnChangeListener(VariableStoreOnChangeListener listener) {
-		synchronized (onChangeListeners) {
-			return onChangeListeners.remove(listener);
-		}
+		return onChangeListeners.remove(listener);
 	}
 
 	/**
 	 * Notifies all {@link VariableStoreOnChangeListener} that are listening for changes to this
 	 * {@link VariableStore} of one or more changes as represented by the list of {@link
-	 * VariableStoreChange} {@code changes}.
+	 * VariableStoreChange} {@code changes}. This method should not be called while holding
+	 * {@link #lock}, so listeners can safely access this store.
+	 *
+	 * <p>If a batch is active in the current thread, the changes are added to the batch, and the
+	 * listeners are notified when the batch is closed.</p>
 	 *
 	 * @param changes one or multiple {@link VariableStoreChange}s representing a modification
 	 *                to this {@link VariableStore}.
 	 */
-	private void notifyOnChange(VariableStoreChange... changes) {
-		List<VariableStoreOnChangeListener> listeners;
-		synchronized (onChangeListeners) {
-			listeners = new ArrayList<>(onChangeListeners);
+	protected void notifyOnChange(VariableStoreChange... changes) {
+		Batch batch = currentBatch.get();
+		if (batch != null) {
+			batch.changes.addAll(Arrays.asList(changes));
+			return;
 		}
-		for (VariableStoreOnChangeListener listener : listeners) {
-			listener.onChange(this, Arrays.asList(changes));
+		fireOnChange(changes);
+	}
+
+	private void fireOnChange(VariableStoreChange... changes) {
+		if (changes.length == 0 || onChangeListeners.isEmpty())
+			return;
+		AsyncVariableStoreDispatcher dispatcher = asyncDispatcher;
+		if (dispatcher != null)
+			dispatcher.dispatch(Arrays.asList(changes));
+		else
+			deliverOnChange(Arrays.asList(changes));
+	}
+
+	/**
+	 * Calls all {@link VariableStoreOnChangeListener}s with the specified changes.
+	 *
+	 * @param changes the changes
+	 */
+	void deliverOnChange(List<VariableStoreChange> changes) {
+		for (VariableStoreOnChangeListener listener : onChangeListeners) {
+			listener.onChange(this, changes);
 		}
 	}
 
+	/**
+	 * Enables asynchronous notification of the listeners. After this call, the changes are added to
+	 * a bounded queue for this store, and the listeners are notified in order on the specified
+	 * executor. See {@link AsyncVariableStoreDispatcher} for details.
+	 *
+	 * @param executor the executor that notifies the listeners
+	 * @param capacity the maximum number of notifications in the queue
+	 * @param overflowPolicy what to do with a new notification when the queue is full
+	 * @return the dispatcher, which can be used to monitor the queue
+	 */
+	public AsyncVariableStoreDispatcher enableAsyncDispatch(Executor executor, int capacity,
+			AsyncVariableStoreDispatcher.OverflowPolicy overflowPolicy) {
+		AsyncVariableStoreDispatcher dispatcher = new AsyncVariableStoreDispatcher(this, executor,
+				capacity, overflowPolicy);
+		asyncDispatcher = dispatcher;
+		return dispatcher;
+	}
+
+	/**
+	 * Disables asynchronous notification of the listeners. Later changes are notified in the
+	 * thread that makes the change. Notifications that are still in the queue of the previous
+	 * dispatcher are still delivered.
+	 */
+	public void disableAsyncDispatch() {
+		asyncDispatcher = null;
+	}
+
+	/**
+	 * Returns the dispatcher that notifies the listeners asynchronously, or null if the listeners
+	 * are notified in the thread that makes the change.
+	 *
+	 * @return the dispatcher or null
+	 */
+	public AsyncVariableStoreDispatcher getAsyncDispatcher() {
+		return asyncDispatcher;
+	}
+
 	// -----------------------------------------------------------
 	// -------------------- Retrieval Methods --------------------
 	// -----------------------------------------------------------
@@ -138,8 +210,8 @@ public class VariableStore {
 	 * @return the {@link Variable} with the given {@code name}, nor {@code null}.
 	 */
 	public Variable getVariable(String name) {
-		synchronized (variables) {
-			return variables.get(name);
+		synchronized (lock) {
+			return readVariable(name);
 		}
 	}
 
@@ -149,8 +221,8 @@ public class VariableStore {
 	 * @return the contents of this {@link VariableStore} as an array of {@link Variable}s.
 	 */
 	public Variable[] getVariables() {
-		synchronized (variables) {
-			return variables.values().toArray(new Variable[0]);
+		synchronized (lock) {
+			return readAllVariables().toArray(new Variable[0]);
 		}
 	}
 
@@ -167,13 +239,9 @@ public class VariableStore {
 	 *         is {@code null}.
 	 */
 	public Object getValue(String variableName) {
-		Variable variable;
-		synchronized (variables) {
-			variable = variables.get(variableName);
+		synchronized (lock) {
+			return readValue(variableName);
 		}
-		if (variable == null)
-			return null;
-		return variable.getValue();
 	}
 
 	/**
@@ -191,7 +259,7 @@ public class VariableStore {
 	 * @return a set of all the names of {@link Variable}s contained in this {@link VariableStore}.
 	 */
 	public Set<String> getVariableNames() {
-		return variables.keySet();
+		return readVariableNames();
 	}
 
 	/**
@@ -200,7 +268,10 @@ public class VariableStore {
 	 * @return a sorted list of all variable names in this {@link VariableStore}.
 	 */
 	public List<String> getSortedVariableNames() {
-		List<String> nameList = new ArrayList<>(variables.keySet());
+		List<String> nameList;
+		synchronized (lock) {
+			nameList = new ArrayList<>(readVariableNames());
+		}
 		Collections.sort(nameList);
 		return nameList;
 	}
@@ -239,12 +310,12 @@ public class VariableStore {
 	 */
 	public void setValue(String name, Object value, boolean notifyObservers,
 						 ZonedDateTime eventTime, VariableStoreChange.Source source) {
-		synchronized (variables) {
-			Variable Variable = new Variable(name, value, eventTime);
-			variables.put(name, Variable);
-			if (notifyObservers) {
-				notifyOnChange(new VariableStoreChange.Put(Variable, eventTime, source));
-			}
+		synchronized (lock) {
+			writeValue(name, value, eventTime);
+		}
+		if (notifyObservers) {
+			notifyOnChange(new VariableStoreChange.Put(new Variable(name, value, eventTime),
+					eventTime, source));
 		}
 	}
 
@@ -282,8 +353,8 @@ public class VariableStore {
                                  ZonedDateTime eventTime,
                                  VariableStoreChange.Source source) {
 		Variable result;
-		synchronized (variables) {
-			result = variables.remove(name);
+		synchronized (lock) {
+			result = deleteVariable(name);
 		}
 		if(result == null) {
 			return null;
@@ -332,9 +403,9 @@ public class VariableStore {
 			VariablesToAdd.add(Variable);
 		}
 
-		synchronized (variables) {
+		synchronized (lock) {
 			for(Variable Variable : VariablesToAdd) {
-				variables.put(Variable.getName(), Variable);
+				writeVariable(Variable);
 			}
 		}
 
@@ -378,8 +449,7 @@ public class VariableStore {
 	 * @return the modifiable map
 	 */
 	public Map<String, Object> getModifiableMap(boolean notifyObservers, ZonedDateTime eventTime) {
-		return new VariableMap(notifyObservers, eventTime,
-				VariableStoreChange.Source.UNKNOWN);
+		return getModifiableMap(notifyObservers, eventTime, VariableStoreChange.Source.UNKNOWN);
 	}
 
 	/**
@@ -396,16 +466,164 @@ public class VariableStore {
 		return new VariableMap(notifyObservers, eventTime, source);
 	}
 
+	/**
+	 * Starts a batch of changes in the current thread. Until the batch is closed, changes that are
+	 * made in the current thread are still written to this store immediately, but the listeners
+	 * are not notified yet. When the batch is closed, all changes are merged and the listeners are
+	 * notified once. For example if a variable is set multiple times, the listeners only receive
+	 * the last value. Changes made by other threads are not affected.
+	 *
+	 * <p>Batches can be nested. The listeners are notified when the outermost batch is closed.
+	 * The batch should always be closed in a finally block. It is usually easier to call {@link
+	 * #runInBatch(BatchAction) runInBatch()}, which does this for you.</p>
+	 *
+	 * @return the batch
+	 */
+	public Batch beginBatch() {
+		Batch batch = currentBatch.get();
+		if (batch == null) {
+			batch = new Batch();
+			currentBatch.set(batch);
+		}
+		batch.depth++;
+		return batch;
+	}
+
+	/**
+	 * Runs the specified action in a batch of changes (see {@link #beginBatch()}). The listeners
+	 * are notified of the changes that the action made in the current thread after the action
+	 * has finished, also if it throws an exception.
+	 *
+	 * @param action the action
+	 * @param <E> the type of exception that the action can throw
+	 * @throws E if the action fails
+	 */
+	public <E extends Exception> void runInBatch(BatchAction<E> action) throws E {
+		Batch batch = beginBatch();
+		try {
+			action.run();
+		} finally {
+			batch.close();
+		}
+	}
+
+	// -----------------------------------------------------------
+	// --------------------- Storage Methods ---------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the stored variable with the specified name, or {@code null} if no such variable is
+	 * stored. This method is called while holding {@link #lock}. Subclasses may override the
+	 * storage methods to store variables in a different way.
+	 *
+	 * @param name the variable name
+	 * @return the variable or {@code null}
+	 */
+	protected Variable readVariable(String name) {
+		return variables.get(name);
+	}
+
+	/**
+	 * Returns the value of the stored variable with the specified name, or {@code null} if no such
+	 * variable is stored. This method is called while holding {@link #lock}.
+	 *
+	 * @param name the variable name
+	 * @return the value or {@code null}
+	 */
+	protected Object readValue(String name) {
+		Variable variable = variables.get(name);
+		return variable == null ? null : variable.getValue();
+	}
+
+	/**
+	 * Returns whether a variable with the specified name is stored. This method is called while
+	 * holding {@link #lock}.
+	 *
+	 * @param name the variable name
+	 * @return true if the variable is stored, false otherwise
+	 */
+	protected boolean containsVariable(String name) {
+		return variables.containsKey(name);
+	}
+
+	/**
+	 * Returns all stored variables. This method is called while holding {@link #lock}.
+	 *
+	 * @return the stored variables
+	 */
+	protected Collection<Variable> readAllVariables() {
+		return variables.values();
+	}
+
+	/**
+	 * Returns the names of all stored variables. This method is called while holding {@link
+	 * #lock}, except from {@link #getVariableNames()}.
+	 *
+	 * @return the names of the stored variables
+	 */
+	protected Set<String> readVariableNames() {
+		return variables.keySet();
+	}
+
+	/**
+	 * Returns the number of stored variables. This method is called while holding {@link #lock}.
+	 *
+	 * @return the number of stored variables
+	 */
+	protected int countVariables() {
+		return variables.size();
+	}
+
+	/**
+	 * Stores the specified variable, replacing any variable with the same name. This method is
+	 * called while holding {@link #lock}.
+	 *
+	 * @param variable the variable
+	 */
+	protected void writeVariable(Variable variable) {
+		variables.put(variable.getName(), variable);
+	}
+
+	/**
+	 * Stores a variable with the specified name, value and update time, replacing any variable
+	 * with the same name. This method is called while holding {@link #lock}.
+	 *
+	 * @param name the variable name
+	 * @param value the value
+	 * @param eventTime the update time
+	 */
+	protected void writeValue(String name, Object value, ZonedDateTime eventTime) {
+		writeVariable(new Variable(name, value, eventTime));
+	}
+
+	/**
+	 * Removes the variable with the specified name. This method is called while holding {@link
+	 * #lock}.
+	 *
+	 * @param name the variable name
+	 * @return the removed variable, or {@code null} if no such variable was stored
+	 */
+	protected Variable deleteVariable(String name) {
+		return variables.remove(name);
+	}
+
+	/**
+	 * Removes all stored variables. This method is called while holding {@link #lock}.
+	 */
+	protected void deleteAllVariables() {
+		variables.clear();
+	}
+
 	/**
 	 * A {@link VariableMap} is a mapping from Variable name to Variable value and can be used as an
 	 * observable and modifiable "view" of the {@link VariableStore} whose changes are maintained
 	 * within this encapsulating {@link VariableStore} object.
 	 */
-	private class VariableMap implements Map<String, Object> {
+	protected class VariableMap implements Map<String, Object> {
 
-		private final boolean notifyObservers;
-		private final ZonedDateTime eventTime;
-		private final VariableStoreChange.Source source;
+		protected final boolean notifyObservers;
+		protected final ZonedDateTime eventTime;
+		protected final VariableStoreChange.Source source;
 
 		// --------------------------------------------------------
 		// -------------------- Constructor(s) --------------------
@@ -451,8 +669,8 @@ public class VariableStore {
 
 		@Override
 		public void clear() {
-			synchronized (variables) {
-				variables.clear();
+			synchronized (lock) {
+				deleteAllVariables();
 			}
 			if (notifyObservers)
 				notifyOnChange(new VariableStoreChange.Clear(eventTime, source));
@@ -464,39 +682,41 @@ public class VariableStore {
 
 		@Override
 		public int size() {
-			synchronized (variables) {
-				return variables.size();
+			synchronized (lock) {
+				return countVariables();
 			}
 		}
 
 		@Override
 		public boolean isEmpty() {
-			synchronized (variables) {
-				return variables.isEmpty();
+			synchronized (lock) {
+				return countVariables() == 0;
 			}
 		}
 
 		@Override
 		public boolean containsKey(Object key) {
-			synchronized (variables) {
-				return variables.containsKey(key);
+			if (!(key instanceof String name))
+				return false;
+			synchronized (lock) {
+				return containsVariable(name);
 			}
 		}
 
 		@Override
 		public Object get(Object key) {
-			synchronized (variables) {
-				if(variables.get(key) != null) {
-					return variables.get(key).getValue();
-				} else return null;
+			if (!(key instanceof String name))
+				return null;
+			synchronized (lock) {
+				return readValue(name);
 			}
 		}
 
 		@Override
 		public boolean containsValue(Object value) {
-			synchronized (variables) {
-				for (Map.Entry<String, Variable> entry : variables.entrySet()) {
-					if(entry.getValue().getValue().equals(value)) return true;
+			synchronized (lock) {
+				for (Variable variable : readAllVariables()) {
+					if(Objects.equals(variable.getValue(), value)) return true;
 				}
 				return false;
 			}
@@ -504,8 +724,8 @@ public class VariableStore {
 
 		@Override
 		public Set<String> keySet() {
-			synchronized (variables) {
-				return variables.keySet();
+			synchronized (lock) {
+				return readVariableNames();
 			}
 		}
 
@@ -513,8 +733,8 @@ public class VariableStore {
 		public Collection<Object> values() {
 			Collection<Object> objectCollection = new ArrayList<>();
 
-			synchronized (variables) {
-				Collection<Variable> VariableCollection = variables.values();
+			synchronized (lock) {
+				Collection<Variable> VariableCollection = readAllVariables();
 				for(Variable Variable : VariableCollection) {
 					objectCollection.add(Variable.getValue());
 				}
@@ -527,12 +747,10 @@ public class VariableStore {
 		public Set<Entry<String, Object>> entrySet() {
 			Set<Entry<String,Object>> resultSet = new HashSet<>();
 
-			synchronized (variables) {
-				Set<Entry<String, Variable>> entrySet = variables.entrySet();
-
-				for(Entry<String, Variable> entry : entrySet) {
-					String key = entry.getKey();
-					Object value = entry.getValue().getValue();
+			synchronized (lock) {
+				for(Variable variable : readAllVariables()) {
+					String key = variable.getName();
+					Object value = variable.getValue();
 					Map.Entry<String,Object> newEntry = new AbstractMap.SimpleEntry<>(key, value);
 					resultSet.add(newEntry);
 				}
@@ -542,4 +760,126 @@ public class VariableStore {
 		}
 	}
 
+	/**
+	 * A batch of changes that was started with {@link #beginBatch()}. It collects the changes that
+	 * are made in one thread and notifies the listeners of the merged changes (see {@link
+	 * #mergeChanges(List)}) when it is closed.
+	 */
+	public class Batch implements AutoCloseable {
+
+		private int depth = 0;
+		private final List<VariableStoreChange> changes = new ArrayList<>();
+
+		private Batch() {
+		}
+
+		/**
+		 * Ends this batch. If this is the outermost batch, the listeners are notified of the
+		 * merged changes.
+		 */
+		@Override
+		public void close() {
+			if (depth == 0)
+				return;
+			depth--;
+			if (depth > 0)
+				return;
+			currentBatch.remove();
+			List<VariableStoreChange> merged = mergeChanges(changes);
+			changes.clear();
+			fireOnChange(merged.toArray(new VariableStoreChange[0]));
+		}
+	}
+
+	/**
+	 * An action that is run in a batch of changes with {@link #runInBatch(BatchAction)
+	 * runInBatch()}.
+	 *
+	 * @param <E> the type of exception that the action can throw
+	 */
+	public interface BatchAction<E extends Exception> {
+
+		/**
+		 * Runs the action.
+		 *
+		 * @throws E if the action fails
+		 */
+		void run() throws E;
+	}
+
+	/**
+	 * Merges the specified list of changes. Consecutive changes with the same time and source are
+	 * merged into at most one {@link VariableStoreChange.Clear}, one {@link
+	 * VariableStoreChange.Remove} and one {@link VariableStoreChange.Put}, in that order. If a
+	 * variable is put or removed multiple times, only the last change is kept. Other types of
+	 * changes are kept as they are.
+	 *
+	 * @param changes the changes
+	 * @return the merged changes
+	 */
+	static List<VariableStoreChange> mergeChanges(List<VariableStoreChange> changes) {
+		List<VariableStoreChange> result = new ArrayList<>();
+		ChangeGroup group = null;
+		for (VariableStoreChange change : changes) {
+			if (group == null || group.source != change.getSource() ||
+					!Objects.equals(group.time, change.getTime())) {
+				if (group != null)
+					group.addTo(result);
+				group = new ChangeGroup(change.getTime(), change.getSource());
+			}
+			group.add(change);
+		}
+		if (group != null)
+			group.addTo(result);
+		return result;
+	}
+
+	/**
+	 * The merged changes with the same time and source.
+	 */
+	private static class ChangeGroup {
+		private final ZonedDateTime time;
+		private final VariableStoreChange.Source source;
+		private boolean clear = false;
+		private final List<VariableStoreChange> others = new ArrayList<>();
+		private final Set<String> removes = new LinkedHashSet<>();
+		private final Map<String,Variable> puts = new LinkedHashMap<>();
+
+		private ChangeGroup(ZonedDateTime time, VariableStoreChange.Source source) {
+			this.time = time;
+			this.source = source;
+		}
+
+		private void add(VariableStoreChange change) {
+			if (change instanceof VariableStoreChange.Put put) {
+				for (Map.Entry<String,Object> entry : put.getVariables().entrySet()) {
+					String name = entry.getKey();
+					removes.remove(name);
+					puts.put(name, new Variable(name, entry.getValue(), time));
+				}
+			} else if (change instanceof VariableStoreChange.Remove remove) {
+				for (String name : remove.getVariableNames()) {
+					puts.remove(name);
+					removes.add(name);
+				}
+			} else if (change instanceof VariableStoreChange.Clear) {
+				clear = true;
+				puts.clear();
+				removes.clear();
+			} else {
+				others.add(change);
+			}
+		}
+
+		private void addTo(List<VariableStoreChange> changes) {
+			if (clear)
+				changes.add(new VariableStoreChange.Clear(time, source));
+			changes.addAll(others);
+			if (!removes.isEmpty())
+				changes.add(new VariableStoreChange.Remove(new ArrayList<>(removes), time, source));
+			if (!puts.isEmpty())
+				changes.add(new VariableStoreChange.Put(puts, time, source));
+		}
+	}
+
 }
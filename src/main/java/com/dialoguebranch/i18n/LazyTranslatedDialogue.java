@@ -0,0 +1,192 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.i18n;
+
+import com.dialoguebranch.model.Dialogue;
+import com.dialoguebranch.model.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Dialogue} that is translated lazily, one {@link Node} at a time. A node is translated
+ * by the {@link Translator} the first time it is returned by {@link #getStartNode()}, {@link
+ * #getNodeById(String)} or {@link #getNodes()}, and the translated node is then kept for later
+ * calls. This means that creating a translated dialogue is about as cheap as reading the source
+ * dialogue, and only the nodes that a user actually visits are translated.
+ *
+ * <p>The translated nodes are memoized in a concurrent map, so this dialogue can be used from
+ * multiple threads. The speakers, variables and referenced dialogues are the same as in the
+ * source dialogue, just like in a dialogue from {@link Translator#translate(Dialogue)}. This
+ * dialogue is frozen: nodes cannot be added and every translated node is frozen as well.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class LazyTranslatedDialogue extends Dialogue {
+
+	private final Dialogue source;
+	private final Translator translator;
+
+	// map from lower-case node titles to translated nodes
+	private final Map<String,Node> translatedNodes = new ConcurrentHashMap<>();
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Constructs a new lazily translated dialogue. The source dialogue should not be changed
+	 * while this dialogue is in use.
+	 *
+	 * @param source the source dialogue
+	 * @param translator the translator
+	 */
+	public LazyTranslatedDialogue(Dialogue source, Translator translator) {
+		super(source.getDialogueName());
+		this.source = source;
+		this.translator = translator;
+		freeze();
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the source dialogue.
+	 *
+	 * @return the source dialogue
+	 */
+	public Dialogue getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the number of nodes that have been translated so far.
+	 *
+	 * @return the number of translated nodes
+	 */
+	public int getTranslatedNodeCount() {
+		return translatedNodes.size();
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	@Override
+	public Node getStartNode() {
+		return getNodeById("start");
+	}
+
+	@Override
+	public Node getNodeById(String nodeId) {
+		String key = nodeId.toLowerCase();
+		Node node = translatedNodes.get(key);
+		if (node != null)
+			return node;
+		Node sourceNode = source.getNodeById(key);
+		if (sourceNode == null)
+			return null;
+		return translatedNodes.computeIfAbsent(key, k -> {
+			Node translated = translator.translate(sourceNode);
+			translated.freeze();
+			return translated;
+		});
+	}
+
+	@Override
+	public List<Node> getNodes() {
+		List<Node> nodes = new ArrayList<>();
+		for (Node sourceNode : source.getNodes()) {
+			nodes.add(getNodeById(sourceNode.getTitle()));
+		}
+		return Collections.unmodifiableList(nodes);
+	}
+
+	@Override
+	public boolean nodeExists(String nodeId) {
+		return source.nodeExists(nodeId);
+	}
+
+	@Override
+	public Set<String> getSpeakers() {
+		return source.getSpeakers();
+	}
+
+	@Override
+	public List<String> getSpeakersList() {
+		return source.getSpeakersList();
+	}
+
+	@Override
+	public Set<String> getVariablesNeeded() {
+		return source.getVariablesNeeded();
+	}
+
+	@Override
+	public Set<String> getVariablesWritten() {
+		return source.getVariablesWritten();
+	}
+
+	@Override
+	public Set<String> getDialoguesReferenced() {
+		return source.getDialoguesReferenced();
+	}
+
+	@Override
+	public int getNodeCount() {
+		return source.getNodeCount();
+	}
+
+	@Override
+	public int getSpeakerCount() {
+		return source.getSpeakerCount();
+	}
+
+	@Override
+	public int getDialoguesReferencedCount() {
+		return source.getDialoguesReferencedCount();
+	}
+
+	@Override
+	public int getVariablesNeededCount() {
+		return source.getVariablesNeededCount();
+	}
+
+	@Override
+	public int getVariablesWrittenCount() {
+		return source.getVariablesWrittenCount();
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.i18n;
+
+import java.util.*;
+
+/**
+ * An immutable map of translations, as it is parsed from a translation file by the {@link
+ * TranslationParser}, that also serves as a lookup index for the {@link Translator}. Next to the
+ * exact translation keys, it contains keys where all whitespace is normalized, so a source text
+ * can be found even if it was written with different line breaks or indentation than the key in
+ * the translation file.
+ *
+ * <p>The index is built once when the translation file is parsed and can be shared by any number
+ * of {@link Translator}s, also from different threads. Normalized keys are compared and hashed
+ * directly on the characters of the original text, so no intermediate strings or arrays are
+ * created when a text is looked up.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class TranslationIndex extends AbstractMap<Translatable,List<ContextTranslation>> {
+
+	private final Map<Translatable,List<ContextTranslation>> translations;
+	private final Map<String,List<ContextTranslation>> exactTranslations;
+	private final Map<NormalizedText,List<ContextTranslation>> normalizedTranslations;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Constructs a new index for the specified translations. The translations are copied, so
+	 * later changes to the specified map are not reflected in this index.
+	 *
+	 * @param translations the translation map
+	 */
+	public TranslationIndex(Map<Translatable,List<ContextTranslation>> translations) {
+		Map<Translatable,List<ContextTranslation>> copy = new LinkedHashMap<>();
+		exactTranslations = new HashMap<>();
+		normalizedTranslations = new HashMap<>();
+		for (Map.Entry<Translatable,List<ContextTranslation>> entry :
+				translations.entrySet()) {
+			List<ContextTranslation> transList = List.copyOf(entry.getValue());
+			copy.put(entry.getKey(), transList);
+			String text = entry.getKey().toString();
+			exactTranslations.put(text.trim(), transList);
+			normalizedTranslations.put(new NormalizedText(text), transList);
+		}
+		this.translations = Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Returns a translation index for the specified translations. If the map is already a
+	 * {@link TranslationIndex}, this method returns the same instance. Otherwise it builds a new
+	 * index.
+	 *
+	 * @param translations the translation map
+	 * @return the translation index
+	 */
+	public static TranslationIndex of(
+			Map<Translatable,List<ContextTranslation>> translations) {
+		if (translations instanceof TranslationIndex index)
+			return index;
+		return new TranslationIndex(translations);
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Finds the translations for the specified source text. It first looks for a key that
+	 * equals the text after leading and trailing whitespace is removed. If there is no such key,
+	 * it looks for a key that equals the text after all whitespace is normalized. If no
+	 * translations are found, this method returns null.
+	 *
+	 * @param text the source text
+	 * @return the translations or null
+	 */
+	public List<ContextTranslation> find(String text) {
+		List<ContextTranslation> transList = exactTranslations.get(text.trim());
+		if (transList == null)
+			transList = normalizedTranslations.get(new NormalizedText(text));
+		return transList;
+	}
+
+	@Override
+	public Set<Entry<Translatable,List<ContextTranslation>>> entrySet() {
+		return translations.entrySet();
+	}
+
+	@Override
+	public List<ContextTranslation> get(Object key) {
+		return translations.get(key);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return translations.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return translations.size();
+	}
+
+	/**
+	 * Returns true if the specified character is matched by \s in a regular expression.
+	 *
+	 * @param c the character
+	 * @return true if the character is whitespace, false otherwise
+	 */
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * A text key that is equal to another key if both texts are the same after they are
+	 * trimmed and every sequence of whitespace is replaced by a single space. The hash code is
+	 * the same as the hash code of that normalized string.
+	 */
+	private static class NormalizedText {
+		private final String text;
+		private final int start;
+		private final int end;
+		private final int hash;
+
+		private NormalizedText(String text) {
+			this.text = text;
+			int start = 0;
+			int end = text.length();
+			while (start < end && text.charAt(start) <= ' ') {
+				start++;
+			}
+			while (end > start && text.charAt(end - 1) <= ' ') {
+				end--;
+			}
+			this.start = start;
+			this.end = end;
+			int hash = 0;
+			boolean prevWhitespace = false;
+			for (int i = start; i < end; i++) {
+				char c = text.charAt(i);
+				if (isWhitespace(c)) {
+					if (!prevWhitespace)
+						hash = 31 * hash + ' ';
+					prevWhitespace = true;
+				} else {
+					hash = 31 * hash + c;
+					prevWhitespace = false;
+				}
+			}
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof NormalizedText other) || hash != other.hash)
+				return false;
+			int i = start;
+			int j = other.start;
+			while (i < end && j < other.end) {
+				char c1 = text.charAt(i);
+				char c2 = other.text.charAt(j);
+				if (isWhitespace(c1) && isWhitespace(c2)) {
+					i = skipWhitespace(text, i, end);
+					j = skipWhitespace(other.text, j, other.end);
+				} else if (c1 == c2) {
+					i++;
+					j++;
+				} else {
+					return false;
+				}
+			}
+			return i == end && j == other.end;
+		}
+
+		private static int skipWhitespace(String text, int index, int end) {
+			while (index < end && isWhitespace(text.charAt(index))) {
+				index++;
+			}
+			return index;
+		}
+	}
+}
@@ -30,11 +30,15 @@ package com.dialoguebranch.i18n;
 import com.dialoguebranch.model.NodeBody;
 import com.dialoguebranch.parser.BodyToken;
 import com.dialoguebranch.parser.BodyTokenizer;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import nl.rrd.utils.exception.LineNumberParseException;
 import nl.rrd.utils.exception.ParseException;
-import nl.rrd.utils.io.FileUtils;
-import nl.rrd.utils.json.JsonMapper;
 import com.dialoguebranch.parser.BodyParser;
 
 import java.io.*;
@@ -59,9 +63,16 @@ import java.util.*;
  * <p>This parser ignores context strings and returns a flat map of translatables. This means that
  * it does not support different translations of the same string with different contexts.</p>
  *
+ * <p>The translations are returned as an immutable {@link TranslationIndex}, so every {@link
+ * Translator} that is created for the same translation file shares the same lookup index.</p>
+ *
  * @author Dennis Hofs (RRD)
  */
 public class TranslationParser {
+	private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+			.disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+			.build();
+
 	public static TranslationParserResult parse(URL url)
 			throws IOException {
 		try (InputStream input = url.openStream()) {
@@ -86,35 +97,64 @@ public class TranslationParser {
 		TranslationParserResult result = new TranslationParserResult();
 		Map<Translatable,List<ContextTranslation>> translations =
 				new LinkedHashMap<>();
-		String json = FileUtils.readFileString(reader);
-		if (json.trim().isEmpty()) {
-			result.getWarnings().add("Empty translation file");
-			result.setTranslations(translations);
-			return result;
-		}
-		Map<String,?> map;
-		try {
-			map = JsonMapper.parse(json, new TypeReference<Map<String, ?>>() {});
-		} catch (ParseException ex) {
-			result.getParseErrors().add(ex);
+		try (JsonParser jsonParser = JSON_FACTORY.createParser(reader)) {
+			JsonToken token = jsonParser.nextToken();
+			if (token == null) {
+				result.getWarnings().add("Empty translation file");
+				result.setTranslations(new TranslationIndex(translations));
+				return result;
+			}
+			if (token != JsonToken.START_OBJECT) {
+				throw new JsonParseException(jsonParser,
+						"Expected JSON object, found: " + token);
+			}
+			parseObject(jsonParser, new LinkedHashSet<>(), translations, result);
+		} catch (JsonProcessingException ex) {
+			// the file is rejected as a whole, like when it failed to parse as a map
+			result.getParseErrors().clear();
+			result.getWarnings().clear();
+			result.getParseErrors().add(new ParseException(
+					"Invalid JSON content: " + ex.getMessage(), ex));
 			return result;
 		}
-		parse(new LinkedHashSet<>(), map, translations, result);
 		if (result.getParseErrors().isEmpty())
-			result.setTranslations(translations);
+			result.setTranslations(new TranslationIndex(translations));
 		return result;
 	}
 
-	private static void parse(Set<String> context, Map<String,?> map,
+	/**
+	 * Parses the fields of a JSON object. When this method is called, the parser should be
+	 * positioned at the start of the object. When it returns, the parser is positioned at the
+	 * end of the object.
+	 *
+	 * <p>The fields are first collected in a map, so that a key that occurs more than once is
+	 * handled as if the object were read into a map: the last value wins, at the position of the
+	 * first occurrence. String values are kept as strings, and other values are copied into a
+	 * {@link TokenBuffer}. The collected fields are parsed after the end of the object.</p>
+	 */
+	private static void parseObject(JsonParser jsonParser, Set<String> context,
 			Map<Translatable,List<ContextTranslation>> translations,
-			TranslationParserResult parseResult) {
-		for (String key : map.keySet()) {
-			Object value = map.get(key);
-			if (value instanceof String) {
-				parseTranslatable(context, key, (String)value, translations,
-						parseResult);
+			TranslationParserResult parseResult) throws IOException {
+		Map<String,Object> fields = new LinkedHashMap<>();
+		while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+			String key = jsonParser.currentName();
+			JsonToken token = jsonParser.nextToken();
+			if (token == JsonToken.VALUE_STRING) {
+				fields.put(key, jsonParser.getText());
 			} else {
-				parseContextMap(key, value, translations, parseResult);
+				TokenBuffer value = new TokenBuffer(jsonParser);
+				value.copyCurrentStructure(jsonParser);
+				fields.put(key, value);
+			}
+		}
+		for (Map.Entry<String,Object> field : fields.entrySet()) {
+			if (field.getValue() instanceof String value) {
+				parseTranslatable(context, field.getKey(), value, translations, parseResult);
+			} else {
+				try (JsonParser valueParser = ((TokenBuffer)field.getValue()).asParser()) {
+					valueParser.nextToken();
+					parseContextMap(field.getKey(), valueParser, translations, parseResult);
+				}
 			}
 		}
 	}
@@ -156,12 +196,8 @@ public class TranslationParser {
 			success = false;
 		}
 		if (success) {
-			List<ContextTranslation> transList = translations.get(source);
-			if (transList == null) {
-				transList = new ArrayList<>();
-				translations.put(source, transList);
-			}
-			transList.add(new ContextTranslation(context, transValue));
+			translations.computeIfAbsent(source, k -> new ArrayList<>()).add(
+					new ContextTranslation(context, transValue));
 		}
 	}
 
@@ -181,26 +217,24 @@ public class TranslationParser {
 		}
 	}
 
-	private static void parseContextMap(String key, Object value,
+	private static void parseContextMap(String key, JsonParser jsonParser,
 			Map<Translatable,List<ContextTranslation>> translations,
-			TranslationParserResult parseResult) {
+			TranslationParserResult parseResult) throws IOException {
 		String contextListStr = key.trim();
 		Set<String> context = new LinkedHashSet<>();
 		if (!contextListStr.isEmpty()) {
 			String[] contextList = contextListStr.split("\\s+");
 			Collections.addAll(context, contextList);
 		}
-		Map<String,?> map;
-		try {
-			map = JsonMapper.convert(value,
-					new TypeReference<Map<String, ?>>() {});
-		} catch (ParseException ex) {
+		if (jsonParser.currentToken() != JsonToken.START_OBJECT) {
 			parseResult.getParseErrors().add(new ParseException(
 					"Failed to parse translation map after context key \"" +
-					key + "\": " + ex.getMessage(), ex));
+					key + "\": Expected JSON object, found: " +
+					jsonParser.currentToken()));
+			jsonParser.skipChildren();
 			return;
 		}
-		parse(context, map, translations, parseResult);
+		parseObject(jsonParser, context, translations, parseResult);
 	}
 
 	private static Translatable parseTranslationString(String translation)
@@ -242,5 +276,4 @@ public class TranslationParser {
 		}
 		return translatables.get(0);
 	}
-
 }
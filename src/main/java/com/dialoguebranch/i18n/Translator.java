@@ -28,8 +28,6 @@
 package com.dialoguebranch.i18n;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.dialoguebranch.model.Dialogue;
 import com.dialoguebranch.model.Node;
@@ -45,13 +43,12 @@ import com.dialoguebranch.model.VariableString;
  */
 public class Translator {
 	private TranslationContext context;
-	private Map<String,List<ContextTranslation>> exactTranslations;
-	private Map<String,List<ContextTranslation>> normalizedTranslations;
-	private Pattern preWhitespaceRegex;
-	private Pattern postWhitespaceRegex;
+	private TranslationIndex translations;
 
 	/**
-	 * Constructs a new translator.
+	 * Constructs a new translator. If the translation map is a {@link TranslationIndex}, as
+	 * returned by the {@link TranslationParser}, the translator uses that index. Otherwise it
+	 * builds a new index.
 	 *
 	 * @param context the translation context
 	 * @param translations the translation map
@@ -59,32 +56,7 @@ public class Translator {
 	public Translator(TranslationContext context,
 					  Map<Translatable,List<ContextTranslation>> translations) {
 		this.context = context;
-		this.exactTranslations = new LinkedHashMap<>();
-		for (Translatable key : translations.keySet()) {
-			this.exactTranslations.put(key.toString().trim(),
-					translations.get(key));
-		}
-		this.normalizedTranslations = new LinkedHashMap<>();
-		for (Translatable key : translations.keySet()) {
-			this.normalizedTranslations.put(getNormalizedText(key),
-					translations.get(key));
-		}
-		preWhitespaceRegex = Pattern.compile("^\\s+");
-		postWhitespaceRegex = Pattern.compile("\\s+$");
-	}
-
-	private String getNormalizedText(Translatable translatable) {
-		String norm = translatable.toString().trim();
-		if (norm.isEmpty())
-			return norm;
-		String[] words = norm.split("\\s+");
-		StringBuilder result = new StringBuilder();
-		for (int i = 0; i < words.length; i++) {
-			if (i > 0)
-				result.append(" ");
-			result.append(words[i]);
-		}
-		return result.toString();
+		this.translations = TranslationIndex.of(translations);
 	}
 
 	/**
@@ -104,6 +76,17 @@ public class Translator {
 		return dialogue;
 	}
 
+	/**
+	 * Returns a view of the specified dialogue that translates each node the first time it is
+	 * requested. See {@link LazyTranslatedDialogue}.
+	 *
+	 * @param dialogue the dialogue
+	 * @return the lazily translated dialogue
+	 */
+	public Dialogue translateLazily(Dialogue dialogue) {
+		return new LazyTranslatedDialogue(dialogue, this);
+	}
+
 	/**
 	 * Translates the specified node. This method creates a clone of the node
 	 * and then tries to fill in a translation for every translatable segment
@@ -119,60 +102,90 @@ public class Translator {
 		return node;
 	}
 
+	/**
+	 * Translates all translatables in the specified body, including nested bodies in "if" and
+	 * "random" commands and reply statements. The translations for each (nested) body are
+	 * collected first, and then every body is rewritten once, in a single pass over its
+	 * segments.
+	 */
 	private void translateBody(String speaker, String addressee,
 			NodeBody body) {
 		TranslatableExtractor extractor = new TranslatableExtractor();
 		List<SourceTranslatable> translatables = extractor.extractFromBody(
 				speaker, addressee, body);
+		Map<NodeBody,Map<NodeBody.Segment,List<NodeBody.Segment>>> replacements =
+				new IdentityHashMap<>();
 		for (SourceTranslatable translatable : translatables) {
-			translateText(translatable);
+			List<NodeBody.Segment> translated = translateText(translatable);
+			if (translated == null)
+				continue;
+			Map<NodeBody.Segment,List<NodeBody.Segment>> bodyReplacements =
+					replacements.computeIfAbsent(translatable.translatable().parent(),
+					parent -> new IdentityHashMap<>());
+			List<NodeBody.Segment> textSegments = translatable.translatable()
+					.segments();
+			// the translation replaces the first segment, the other segments are removed
+			bodyReplacements.put(textSegments.get(0), translated);
+			for (int i = 1; i < textSegments.size(); i++) {
+				bodyReplacements.put(textSegments.get(i), Collections.emptyList());
+			}
+		}
+		for (Map.Entry<NodeBody,Map<NodeBody.Segment,List<NodeBody.Segment>>> entry :
+				replacements.entrySet()) {
+			replaceSegments(entry.getKey(), entry.getValue());
 		}
 	}
 
-	private void translateText(SourceTranslatable text) {
-		String textPlain = text.translatable().toString();
-		String preWhitespace = "";
-		String postWhitespace = "";
-		Matcher m = preWhitespaceRegex.matcher(textPlain);
-		if (m.find())
-			preWhitespace = m.group();
-		m = postWhitespaceRegex.matcher(textPlain);
-		if (m.find())
-			postWhitespace = m.group();
-		List<ContextTranslation> transList = exactTranslations.get(
-				text.translatable().toString().trim());
-		if (transList == null) {
-			transList = normalizedTranslations.get(getNormalizedText(
-					text.translatable()));
+	private void replaceSegments(NodeBody body,
+			Map<NodeBody.Segment,List<NodeBody.Segment>> replacements) {
+		List<NodeBody.Segment> bodySegments = new ArrayList<>(
+				body.getSegments().size() + replacements.size());
+		for (NodeBody.Segment segment : body.getSegments()) {
+			List<NodeBody.Segment> replacement = replacements.get(segment);
+			if (replacement == null)
+				bodySegments.add(segment);
+			else
+				bodySegments.addAll(replacement);
 		}
+		body.clearSegments();
+		for (NodeBody.Segment segment : bodySegments) {
+			body.addSegment(segment);
+		}
+	}
+
+	/**
+	 * Finds the translation of the specified text. It returns the segments that should replace
+	 * the text segments in the parent body, including leading and trailing whitespace of the
+	 * source text. If no translation is found, this method returns null.
+	 */
+	private List<NodeBody.Segment> translateText(SourceTranslatable text) {
+		String textPlain = text.translatable().toString();
+		List<ContextTranslation> transList = translations.find(textPlain);
 		if (transList == null)
-			return;
-		Translatable translation = findContextTranslation(text, transList);
-		NodeBody body = text.translatable().parent();
-		List<NodeBody.Segment> bodySegments = new ArrayList<>(
-				body.getSegments());
-		List<NodeBody.Segment> textSegments = text.translatable()
-				.segments();
-		int insertIndex = body.getSegments().indexOf(textSegments.get(0));
-		for (NodeBody.Segment segment : textSegments) {
-			bodySegments.remove(segment);
+			return null;
+		int preEnd = 0;
+		while (preEnd < textPlain.length() &&
+				TranslationIndex.isWhitespace(textPlain.charAt(preEnd))) {
+			preEnd++;
 		}
-		if (preWhitespace.length() > 0) {
-			bodySegments.add(insertIndex++, new NodeBody.TextSegment(
-					new VariableString(preWhitespace)));
+		int postStart = textPlain.length();
+		while (postStart > preEnd &&
+				TranslationIndex.isWhitespace(textPlain.charAt(postStart - 1))) {
+			postStart--;
 		}
+		Translatable translation = findContextTranslation(text, transList);
 		List<NodeBody.Segment> transSegments = translation.segments();
-		for (NodeBody.Segment transSegment : transSegments) {
-			bodySegments.add(insertIndex++, transSegment);
-		}
-		if (postWhitespace.length() > 0) {
-			bodySegments.add(insertIndex, new NodeBody.TextSegment(
-					new VariableString(postWhitespace)));
+		List<NodeBody.Segment> result = new ArrayList<>(transSegments.size() + 2);
+		if (preEnd > 0) {
+			result.add(new NodeBody.TextSegment(new VariableString(
+					textPlain.substring(0, preEnd))));
 		}
-		body.clearSegments();
-		for (NodeBody.Segment segment : bodySegments) {
-			body.addSegment(segment);
+		result.addAll(transSegments);
+		if (postStart < textPlain.length()) {
+			result.add(new NodeBody.TextSegment(new VariableString(
+					textPlain.substring(postStart))));
 		}
+		return result;
 	}
 
 	private Translatable findContextTranslation(
@@ -0,0 +1,154 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *      as outlined below. Based on original source code licensed under the following terms:
+ *
+ *                                            ----------
+ *
+ * Copyright 2019-2022 WOOL Foundation - Licensed under the MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.model;
+
+import com.dialoguebranch.i18n.ContextTranslation;
+import com.dialoguebranch.i18n.Translatable;
+import com.dialoguebranch.i18n.TranslationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link BaseProject} is the read-only view of a Dialogue Branch Project, that is shared by all
+ * project implementations. It gives access to the dialogues and translations, but does not define
+ * how they are loaded or changed. A {@link Project} keeps all dialogues in memory and can be
+ * modified with its setters, while a {@link com.dialoguebranch.parser.LazyProject LazyProject}
+ * parses files when they are first needed.
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public abstract class BaseProject {
+	private ProjectMetaData metaData;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	protected BaseProject() { }
+
+	protected BaseProject(ProjectMetaData metaData) {
+		this.metaData = metaData;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns all available dialogues in this project. This includes source dialogues as well as
+	 * translated dialogues with the default {@link TranslationContext}.
+	 *
+	 * @return the available dialogues (source and translations with default context)
+	 */
+	public abstract Map<FileDescriptor, Dialogue> getDialogues();
+
+	/**
+	 * Returns the source dialogues. This excludes any translations.
+	 *
+	 * @return the source dialogues (no translations)
+	 */
+	public abstract Map<FileDescriptor, Dialogue> getSourceDialogues();
+
+	/**
+	 * Returns the translations of all phrases per dialogue. This method returns a map from a
+	 * dialogue key to a translation map.
+	 *
+	 * <p>A translation map is a map from a source phrase to a list of translated phrases, with
+	 * different contexts.</p>
+	 *
+	 * @return the translations
+	 */
+	public abstract Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>>
+	getTranslations();
+
+	/**
+	 * Returns the {@link ProjectMetaData} associated with this project, or {@code null} if no
+	 * metadata is associated with this project.
+	 * @return the {@link ProjectMetaData} associated with this project.
+	 */
+	public ProjectMetaData getMetaData() {
+		return metaData;
+	}
+
+	/**
+	 * Sets the {@link ProjectMetaData} associated with this project.
+	 * @param metaData the {@link ProjectMetaData} associated with this project.
+	 */
+	public void setMetaData(ProjectMetaData metaData) {
+		this.metaData = metaData;
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Returns a list of all supported languages in this project. In the case of a "simple"
+	 * Dialogue Branch project (i.e. a folder with .dlb and possibly .json files without a
+	 * specific metadata file), this list is derived from the list of {@link FileDescriptor}s in
+	 * this project. If a {@link ProjectMetaData} has been set (and a language map has been defined
+	 * therein), this information will be used instead.
+	 * @return a list of all supported languages in this project.
+	 */
+	public List<String> getLanguages() {
+		List<String> result = new ArrayList<>();
+
+		// If no metaData has been defined, scrape languages from the set of available dialogues
+		if(metaData == null || metaData.getLanguageMap() == null) {
+			for(FileDescriptor fileDescription : getDialogues().keySet()) {
+				if(!result.contains(fileDescription.getLanguage()))
+					result.add(fileDescription.getLanguage());
+			}
+
+		// If there is metadata, obtain the list of languages from there
+		} else {
+			return null; //TODO: Implement.
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a translated dialogue for the specified translation context. If the description
+	 * refers to a source dialogue, that dialogue is returned. Otherwise, the source dialogue with
+	 * the same dialogue name is translated with the translation set for the specified language
+	 * and the translation context.
+	 *
+	 * <p>If no source dialogue or translation is found, this method returns null. The returned
+	 * dialogue may be shared with other callers and should not be modified.</p>
+	 *
+	 * @param dialogueDescription the dialogue description (name and language)
+	 * @param context the translation context
+	 * @return the translated dialogue or null
+	 */
+	public abstract Dialogue getTranslatedDialogue(FileDescriptor dialogueDescription,
+			TranslationContext context);
+}
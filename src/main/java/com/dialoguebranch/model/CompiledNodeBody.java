@@ -0,0 +1,319 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.model;
+
+import com.dialoguebranch.model.command.Command;
+import com.dialoguebranch.model.command.FoldedExpression;
+import com.dialoguebranch.model.command.IfCommand;
+import com.dialoguebranch.model.command.RandomCommand;
+import com.dialoguebranch.model.command.SetCommand;
+import nl.rrd.utils.expressions.EvaluationException;
+import nl.rrd.utils.expressions.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link CompiledNodeBody} is the execution plan of a {@link NodeBody}. The segment tree of the
+ * body, including the bodies of nested "if" and "random" commands, is compiled into one flat and
+ * immutable sequence of instructions:
+ *
+ * <ul>
+ *   <li>emit text: append plain text to the current text run</li>
+ *   <li>interpolate variable: append the value of a variable to the current text run</li>
+ *   <li>evaluate expression: evaluate the expression of a "set" command</li>
+ *   <li>branch: jump if the condition of an "if" or "elseif" clause is false</li>
+ *   <li>jump: jump to the end of an "if" or "random" command</li>
+ *   <li>pick random: jump to a randomly selected clause of a "random" command</li>
+ *   <li>emit command: execute an action or input command, which adds a command segment</li>
+ *   <li>emit reply: execute a reply and add it to the processed body</li>
+ * </ul>
+ *
+ * <p>The interpreter in {@link #execute(Map, boolean, NodeBody) execute()} collects subsequent
+ * text in a single {@link StringBuilder}, and only adds a text segment to the processed body when
+ * a command segment is emitted or at the end. The result is the same as executing the segment
+ * tree, but without creating and merging intermediate segments.</p>
+ *
+ * <p>Expressions in "if" and "set" commands are wrapped in {@link FoldedExpression}s along with
+ * the body, so constant expressions are only evaluated once.</p>
+ *
+ * <p>A {@link CompiledNodeBody} is created by {@link NodeBody#getCompiledBody()}. It can be
+ * executed by multiple threads at the same time.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public final class CompiledNodeBody {
+
+	private static final int OP_TEXT = 0;
+	private static final int OP_VARIABLE = 1;
+	private static final int OP_EVALUATE = 2;
+	private static final int OP_BRANCH_IF_FALSE = 3;
+	private static final int OP_JUMP = 4;
+	private static final int OP_RANDOM = 5;
+	private static final int OP_COMMAND = 6;
+	private static final int OP_REPLY = 7;
+
+	private final int[] opcodes;
+	private final Object[] operands;
+	private final int[] jumpTargets;
+	private final List<String> readVariableNames;
+	private final int textLengthEstimate;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	private CompiledNodeBody(int[] opcodes, Object[] operands, int[] jumpTargets,
+			List<String> readVariableNames, int textLengthEstimate) {
+		this.opcodes = opcodes;
+		this.operands = operands;
+		this.jumpTargets = jumpTargets;
+		this.readVariableNames = readVariableNames;
+		this.textLengthEstimate = textLengthEstimate;
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Compiles the specified body into a {@link CompiledNodeBody}.
+	 *
+	 * @param body the body
+	 * @return the compiled body
+	 */
+	public static CompiledNodeBody compile(NodeBody body) {
+		Compiler compiler = new Compiler();
+		compiler.compileBody(body);
+		return compiler.build(body.getReadVariableNames());
+	}
+
+	/**
+	 * Returns the sorted names of all variables that are read in the body, including the reply
+	 * statements and reply commands (see {@link NodeBody#getReadVariableNames()}). The list is
+	 * computed once at compile time and cannot be modified.
+	 *
+	 * @return the names of the variables that are read
+	 */
+	public List<String> getReadVariableNames() {
+		return readVariableNames;
+	}
+
+	/**
+	 * Returns the number of instructions in this compiled body.
+	 *
+	 * @return the number of instructions
+	 */
+	public int size() {
+		return opcodes.length;
+	}
+
+	/**
+	 * Executes this compiled body with respect to the specified variable map. This has the same
+	 * result as executing the segment tree as described in {@link NodeBody#execute(Map, boolean,
+	 * NodeBody) NodeBody.execute()}. Any resulting text and command segments and replies are
+	 * added to "processedBody".
+	 *
+	 * @param variables the variable map
+	 * @param trimText true if leading and trailing whitespace of the body should be trimmed (for
+	 *                 the body that is directly in the node), false otherwise
+	 * @param processedBody the processed body
+	 * @throws EvaluationException if an expression cannot be evaluated
+	 */
+	public void execute(Map<String,Object> variables, boolean trimText,
+			NodeBody processedBody) throws EvaluationException {
+		StringBuilder text = null;
+		boolean inText = false;
+		int pc = 0;
+		while (pc < opcodes.length) {
+			switch (opcodes[pc]) {
+				case OP_TEXT -> {
+					if (text == null)
+						text = new StringBuilder(textLengthEstimate);
+					text.append((String)operands[pc]);
+					inText = true;
+					pc++;
+				}
+				case OP_VARIABLE -> {
+					if (text == null)
+						text = new StringBuilder(textLengthEstimate);
+					Object value = variables == null ? null :
+							variables.get((String)operands[pc]);
+					VariableString.appendValue(text, value);
+					inText = true;
+					pc++;
+				}
+				case OP_EVALUATE -> {
+					((FoldedExpression)operands[pc]).evaluate(variables);
+					pc++;
+				}
+				case OP_BRANCH_IF_FALSE -> {
+					Value condition = ((FoldedExpression)operands[pc]).evaluate(variables);
+					pc = condition.asBoolean() ? pc + 1 : jumpTargets[pc];
+				}
+				case OP_JUMP -> pc = jumpTargets[pc];
+				case OP_RANDOM -> {
+					RandomOperand random = (RandomOperand)operands[pc];
+					pc = random.clauseStarts[random.command.selectClauseIndex()];
+				}
+				case OP_COMMAND -> {
+					if (inText) {
+						addText(processedBody, text);
+						inText = false;
+					}
+					((Command)operands[pc]).executeBodyCommand(variables, processedBody);
+					pc++;
+				}
+				case OP_REPLY -> {
+					processedBody.addReply(((Reply)operands[pc]).execute(variables));
+					pc++;
+				}
+				default -> throw new IllegalStateException(
+						"Unknown opcode: " + opcodes[pc]);
+			}
+		}
+		if (inText)
+			addText(processedBody, text);
+		if (trimText)
+			processedBody.trimText();
+	}
+
+	private static void addText(NodeBody processedBody, StringBuilder text) {
+		processedBody.addSegment(new NodeBody.TextSegment(
+				new VariableString(text.toString())));
+		text.setLength(0);
+	}
+
+	/**
+	 * The operand of a "pick random" instruction.
+	 *
+	 * @param command the random command
+	 * @param clauseStarts the index of the first instruction of each clause
+	 */
+	private record RandomOperand(RandomCommand command, int[] clauseStarts) { }
+
+	/**
+	 * Builds the instruction sequence of a {@link CompiledNodeBody}.
+	 */
+	private static class Compiler {
+		private int[] opcodes = new int[16];
+		private Object[] operands = new Object[16];
+		private int[] jumpTargets = new int[16];
+		private int size = 0;
+		private int textLengthEstimate = 0;
+
+		private int emit(int opcode, Object operand) {
+			if (size == opcodes.length) {
+				opcodes = Arrays.copyOf(opcodes, size * 2);
+				operands = Arrays.copyOf(operands, size * 2);
+				jumpTargets = Arrays.copyOf(jumpTargets, size * 2);
+			}
+			opcodes[size] = opcode;
+			operands[size] = operand;
+			jumpTargets[size] = -1;
+			return size++;
+		}
+
+		private void compileBody(NodeBody body) {
+			for (NodeBody.Segment segment : body.getSegments()) {
+				if (segment instanceof NodeBody.TextSegment textSegment) {
+					compileText(textSegment.getText());
+				} else {
+					compileCommand(((NodeBody.CommandSegment)segment).getCommand());
+				}
+			}
+			for (Reply reply : body.getReplies()) {
+				emit(OP_REPLY, reply);
+			}
+		}
+
+		private void compileText(VariableString text) {
+			List<VariableString.Segment> segments = text.getSegments();
+			if (segments.isEmpty()) {
+				// an empty text segment still ends up as a text segment in the processed body
+				emit(OP_TEXT, "");
+				return;
+			}
+			for (VariableString.Segment segment : segments) {
+				if (segment instanceof VariableString.TextSegment textSegment) {
+					emit(OP_TEXT, textSegment.getText());
+					textLengthEstimate += textSegment.getText().length();
+				} else {
+					emit(OP_VARIABLE, ((VariableString.VariableSegment)segment)
+							.getVariableName());
+					textLengthEstimate += VariableString.VARIABLE_LENGTH_ESTIMATE;
+				}
+			}
+		}
+
+		private void compileCommand(Command command) {
+			if (command instanceof SetCommand setCommand) {
+				emit(OP_EVALUATE, setCommand.getFoldedExpression());
+			} else if (command instanceof IfCommand ifCommand) {
+				List<Integer> endJumps = new ArrayList<>();
+				for (IfCommand.Clause clause : ifCommand.getIfClauses()) {
+					int branch = emit(OP_BRANCH_IF_FALSE,
+							FoldedExpression.fold(clause.getExpression()));
+					compileBody(clause.getStatement());
+					endJumps.add(emit(OP_JUMP, null));
+					jumpTargets[branch] = size;
+				}
+				if (ifCommand.getElseClause() != null)
+					compileBody(ifCommand.getElseClause());
+				for (int jump : endJumps) {
+					jumpTargets[jump] = size;
+				}
+			} else if (command instanceof RandomCommand randomCommand) {
+				List<RandomCommand.Clause> clauses = randomCommand.getClauses();
+				int[] clauseStarts = new int[clauses.size()];
+				emit(OP_RANDOM, new RandomOperand(randomCommand, clauseStarts));
+				List<Integer> endJumps = new ArrayList<>();
+				for (int i = 0; i < clauses.size(); i++) {
+					clauseStarts[i] = size;
+					compileBody(clauses.get(i).getStatement());
+					endJumps.add(emit(OP_JUMP, null));
+				}
+				for (int jump : endJumps) {
+					jumpTargets[jump] = size;
+				}
+			} else {
+				emit(OP_COMMAND, command);
+			}
+		}
+
+		private CompiledNodeBody build(List<String> readVariableNames) {
+			return new CompiledNodeBody(Arrays.copyOf(opcodes, size),
+					Arrays.copyOf(operands, size), Arrays.copyOf(jumpTargets, size),
+					List.copyOf(readVariableNames), textLengthEstimate);
+		}
+	}
+}
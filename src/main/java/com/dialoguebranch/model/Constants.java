@@ -68,6 +68,10 @@ public class Constants {
      *  (including the '.') */
     public static final String DLB_TRANSLATION_FILE_EXTENSION = ".json";
 
+    /** The String constant defining the file extension for binary Dialogue Branch project
+     * snapshots (including the '.') */
+    public static final String DLB_SNAPSHOT_FILE_EXTENSION = ".dlbs";
+
     /** The list of Strings defining the names of header tags that bear a special meaning within
      * Dialogue Branch */
     public static final String[] DLB_RESERVED_HEADER_TAGS
@@ -53,6 +53,7 @@ public class Dialogue {
 	private Set<String> variablesNeeded = new HashSet<>();
 	private Set<String> variablesWritten = new HashSet<>();
 	private Set<String> dialoguesReferenced = new HashSet<>();
+	private boolean frozen = false;
 	
 	// ---------- Constructors:
 	
@@ -73,19 +74,20 @@ public class Dialogue {
 
 	/**
 	 * Creates an instance of a {@link Dialogue}, instantiated with the contents of the given
-	 * {@code other} {@link Dialogue}.
+	 * {@code other} {@link Dialogue}. The nodes are copied with {@link Node#Node(Node)}, so if the
+	 * other dialogue is frozen, the copied nodes share its immutable parts.
 	 *
 	 * @param other the {@link Dialogue} with which to instantiate this {@link Dialogue}
 	 */
 	public Dialogue(Dialogue other) {
-		dialogueName = other.dialogueName;
-		for (String key : other.nodes.keySet()) {
-			nodes.put(key, new Node(other.nodes.get(key)));
+		dialogueName = other.getDialogueName();
+		for (Node node : other.getNodes()) {
+			nodes.put(node.getTitle().toLowerCase(), new Node(node));
 		}
-		speakers.addAll(other.speakers);
-		variablesNeeded.addAll(other.variablesNeeded);
-		variablesWritten.addAll(other.variablesWritten);
-		dialoguesReferenced.addAll(other.dialoguesReferenced);
+		speakers.addAll(other.getSpeakers());
+		variablesNeeded.addAll(other.getVariablesNeeded());
+		variablesWritten.addAll(other.getVariablesWritten());
+		dialoguesReferenced.addAll(other.getDialoguesReferenced());
 	}
 	
 	// ---------- Getters:
@@ -118,6 +120,7 @@ public class Dialogue {
 	}
 
 	public void addNode(Node node) {
+		checkNotFrozen();
 		nodes.put(node.getTitle().toLowerCase(), node);
 		if (node.getHeader().getSpeaker() != null)
 			speakers.add(node.getHeader().getSpeaker());
@@ -168,10 +171,40 @@ public class Dialogue {
 	 * @param dialogueName the name of this {@link Dialogue}.
 	 */
 	public void setDialogueName(String dialogueName) {
+		checkNotFrozen();
 		this.dialogueName = dialogueName;
 	}
 	
 	// ---------- Functions:
+
+	/**
+	 * Makes this {@link Dialogue} with all its nodes immutable. After this method has been called,
+	 * any method that changes the dialogue or its nodes throws an {@link IllegalStateException}.
+	 * A frozen {@link Dialogue} can be safely shared between threads, and executing it does not
+	 * require a copy. This is done after a dialogue has been parsed or translated.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		for (Node node : nodes.values()) {
+			node.freeze();
+		}
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this {@link Dialogue} has been frozen with {@link #freeze()}.
+	 *
+	 * @return {@code true} if this {@link Dialogue} is frozen, {@code false} otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Dialogue is frozen: " + dialogueName);
+	}
 	
 	public boolean nodeExists(String nodeId) {
 		return nodes.containsKey(nodeId.toLowerCase());
@@ -27,6 +27,12 @@
 
 package com.dialoguebranch.model;
 
+import nl.rrd.utils.expressions.EvaluationException;
+import com.dialoguebranch.model.protocol.DialogueMessage;
+import com.dialoguebranch.model.protocol.DialogueMessageFactory;
+
+import java.util.Collections;
+
 /**
  * A {@link Node} represents a single step in a {@link Dialogue} definition.
  *
@@ -36,6 +42,13 @@ public class Node {
 	
 	private NodeHeader header;
 	private NodeBody body;
+	private boolean frozen = false;
+
+	// created on the first call of getPrerenderedNode() if the body is static
+	private volatile Node prerenderedNode = null;
+
+	// created on the first call of getStaticMessage() if the body is static
+	private volatile DialogueMessage staticMessage = null;
 	
 	// ---------- Constructors:
 
@@ -66,12 +79,13 @@ public class Node {
 
 	/**
 	 * Creates an instance of a {@link Node} instantiated with the contents from the given {@code other}
-	 * {@link Node}.
+	 * {@link Node}. The copy is not frozen, but if the other {@link Node} is frozen, the copy shares
+	 * its immutable header and the immutable parts of its body (see {@link NodeBody#NodeBody(NodeBody)}).
 	 *
 	 * @param other the {@link Node} from which to copy its contents into this {@link Node}
 	 */
 	public Node(Node other) {
-		header = new NodeHeader(other.header);
+		header = other.header.isFrozen() ? other.header : new NodeHeader(other.header);
 		body = new NodeBody(other.body);
 	}
 	
@@ -103,6 +117,7 @@ public class Node {
 	 * @param header the {@link NodeHeader} for this {@link Node}.
 	 */
 	public void setHeader(NodeHeader header) {
+		checkNotFrozen();
 		this.header = header;
 	}
 
@@ -112,10 +127,86 @@ public class Node {
 	 * @param body the {@link NodeBody} for this {@link Node}.
 	 */
 	public void setBody(NodeBody body) {
+		checkNotFrozen();
 		this.body = body;
 	}
 	
 	// ---------- Utility:
+
+	/**
+	 * Makes this {@link Node} with its header and body immutable. After this method has been
+	 * called, any method that changes the node or its contents throws an {@link
+	 * IllegalStateException}. A frozen {@link Node} can be safely shared between threads.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		header.freeze();
+		body.freeze();
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this {@link Node} has been frozen with {@link #freeze()}.
+	 *
+	 * @return {@code true} if this {@link Node} is frozen, {@code false} otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Node is frozen: " + getTitle());
+	}
+
+	/**
+	 * If this {@link Node} is frozen and its body is static (see {@link NodeBody#isStatic()}),
+	 * this method returns the executed node. Because the result of executing a static node does
+	 * not depend on any variables, the node is only executed on the first call. The result is
+	 * frozen and returned on every subsequent call. For a node that is not static, this method
+	 * returns {@code null}, and the node should be executed as usual.
+	 *
+	 * <p>As each language has its own {@link Dialogue} with its own nodes, the executed node is
+	 * effectively cached per language.</p>
+	 *
+	 * @return the executed {@link Node} or {@code null}
+	 * @throws EvaluationException if the node cannot be executed
+	 */
+	public Node getPrerenderedNode() throws EvaluationException {
+		if (!frozen || !body.isStatic())
+			return null;
+		Node result = prerenderedNode;
+		if (result == null) {
+			NodeBody processedBody = new NodeBody();
+			body.execute(Collections.emptyMap(), true, processedBody);
+			result = new Node(header, processedBody);
+			result.freeze();
+			prerenderedNode = result;
+		}
+		return result;
+	}
+
+	/**
+	 * If this {@link Node} is frozen and its body is static (see {@link NodeBody#isStatic()}),
+	 * such as the result of {@link #getPrerenderedNode()}, this method returns the protocol
+	 * message for this node, with the statement and replies that are sent to the client. The
+	 * message is generated with {@link DialogueMessageFactory#generateStaticMessage(Node)} on the
+	 * first call. It is frozen, so it can be shared between all messages for this node. For a
+	 * node that is not static, this method returns {@code null}.
+	 *
+	 * @return the frozen {@link DialogueMessage} or {@code null}
+	 */
+	public DialogueMessage getStaticMessage() {
+		if (!frozen || !body.isStatic())
+			return null;
+		DialogueMessage result = staticMessage;
+		if (result == null) {
+			result = DialogueMessageFactory.generateStaticMessage(this);
+			staticMessage = result;
+		}
+		return result;
+	}
 	
 	/**
 	 * Returns the title of this {@link Node} as defined in its
@@ -88,9 +88,26 @@ public class NodeBody {
 	private List<Segment> segments = new ArrayList<>();
 	private List<Reply> replies = new ArrayList<>();
 
+	private boolean frozen = false;
+
+	// computed when the body is frozen
+	private boolean sideEffectFree = false;
+	private boolean staticContent = false;
+
+	// created on first execution, and cleared when segments or replies are added or removed
+	private volatile CompiledNodeBody compiledBody = null;
+
 	public NodeBody() {
 	}
 
+	/**
+	 * Constructs a copy of another body. The copy is not frozen. If the other body is frozen,
+	 * the copy shares its immutable parts: variable strings, node pointers and commands without
+	 * nested bodies. Nested bodies in "if" and "random" commands and replies are copied, so they
+	 * can still be changed in the copy.
+	 *
+	 * @param other the other body
+	 */
 	public NodeBody(NodeBody other) {
 		for (Segment segment : other.segments) {
 			this.segments.add(segment.clone());
@@ -110,6 +127,8 @@ public class NodeBody {
 	}
 
 	public void addSegment(Segment segment) {
+		checkNotFrozen();
+		compiledBody = null;
 		Segment lastSegment = null;
 		if (!segments.isEmpty())
 			lastSegment = segments.get(segments.size() - 1);
@@ -129,24 +148,45 @@ public class NodeBody {
 	}
 
 	public void clearSegments() {
+		checkNotFrozen();
+		compiledBody = null;
 		segments.clear();
 	}
 
-	private void trimText() {
+	/**
+	 * Removes leading whitespace from the first segment and trailing whitespace from the last
+	 * segment, if they are text segments. Whitespace is any of the characters matched by \s in a
+	 * regular expression. This should only be called on a processed body, where all variables have
+	 * been resolved.
+	 */
+	void trimText() {
+		checkNotFrozen();
 		if (!segments.isEmpty() && segments.get(0) instanceof TextSegment) {
 			TextSegment segment = (TextSegment)segments.get(0);
-			String text = segment.text.evaluate(null).replaceAll("^\\s+", "");
-			segment.text = new VariableString(text);
+			String text = segment.text.evaluate(null);
+			int start = 0;
+			while (start < text.length() && isWhitespace(text.charAt(start))) {
+				start++;
+			}
+			segment.text = new VariableString(text.substring(start));
 		}
 		if (!segments.isEmpty() && segments.get(segments.size() - 1)
 				instanceof TextSegment) {
 			TextSegment segment = (TextSegment)segments.get(
 					segments.size() - 1);
-			String text = segment.text.evaluate(null).replaceAll("\\s+$", "");
-			segment.text = new VariableString(text);
+			String text = segment.text.evaluate(null);
+			int end = text.length();
+			while (end > 0 && isWhitespace(text.charAt(end - 1))) {
+				end--;
+			}
+			segment.text = new VariableString(text.substring(0, end));
 		}
 	}
 
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
 	public List<Reply> getReplies() {
 		return replies;
 	}
@@ -165,9 +205,122 @@ public class NodeBody {
 	}
 
 	public void addReply(Reply reply) {
+		checkNotFrozen();
+		compiledBody = null;
 		replies.add(reply);
 	}
 
+	/**
+	 * Makes this body immutable, including all segments, nested bodies and replies. After this
+	 * method has been called, any method that changes the body throws an {@link
+	 * IllegalStateException}. A frozen body can be executed concurrently and shared between
+	 * dialogues without copying it.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		for (Segment segment : segments) {
+			segment.freeze();
+		}
+		for (Reply reply : replies) {
+			reply.freeze();
+		}
+		replies = Collections.unmodifiableList(replies);
+		sideEffectFree = !hasSideEffects();
+		staticContent = sideEffectFree && getReadVariableNames().isEmpty();
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this body is free of side effects. That is the case if it has been frozen,
+	 * and neither the statement nor the reply statements contain a {@link SetCommand} or {@link
+	 * RandomCommand}, also not inside an {@link IfCommand}. Executing such a body does not change
+	 * any variables, and the result only depends on the values of the variables that are read
+	 * (see {@link #getReadVariableNames()}), so it can be cached for those values.
+	 *
+	 * @return true if this body is free of side effects, false otherwise
+	 */
+	public boolean isSideEffectFree() {
+		return sideEffectFree;
+	}
+
+	/**
+	 * Returns whether this body is static. That is the case if it is free of side effects (see
+	 * {@link #isSideEffectFree()}) and it does not read any variables. Executing a static body
+	 * always gives the same result, so it only needs to be executed once (see {@link
+	 * Node#getPrerenderedNode()}).
+	 *
+	 * @return true if this body is static, false otherwise
+	 */
+	public boolean isStatic() {
+		return staticContent;
+	}
+
+	private boolean hasSideEffects() {
+		for (Segment segment : segments) {
+			if (segment instanceof CommandSegment cmdSegment &&
+					hasSideEffects(cmdSegment.getCommand())) {
+				return true;
+			}
+		}
+		for (Reply reply : replies) {
+			if (reply.getStatement() != null && reply.getStatement().hasSideEffects())
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean hasSideEffects(Command command) {
+		if (command instanceof SetCommand || command instanceof RandomCommand)
+			return true;
+		if (!(command instanceof IfCommand ifCommand))
+			return false;
+		for (IfCommand.Clause clause : ifCommand.getIfClauses()) {
+			if (clause.getStatement().hasSideEffects())
+				return true;
+		}
+		return ifCommand.getElseClause() != null && ifCommand.getElseClause().hasSideEffects();
+	}
+
+	/**
+	 * Returns whether this body has been frozen with {@link #freeze()}.
+	 *
+	 * @return true if this body is frozen, false otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Node body is frozen");
+	}
+
+	/**
+	 * Returns the compiled execution plan of this body. It is created on the first call and then
+	 * reused. It is recreated after segments or replies have been added with the methods of this
+	 * class. If the body, a nested statement or a command is modified in another way after it was
+	 * executed, {@link #clearCompiledBody()} should be called.
+	 *
+	 * @return the compiled body
+	 */
+	public CompiledNodeBody getCompiledBody() {
+		CompiledNodeBody result = compiledBody;
+		if (result == null) {
+			result = CompiledNodeBody.compile(this);
+			compiledBody = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Clears the compiled execution plan of this body, so it will be compiled again on the next
+	 * execution.
+	 */
+	public void clearCompiledBody() {
+		compiledBody = null;
+	}
+
 	/**
 	 * Retrieves all variable names that are read in this body.
 	 * 
@@ -278,6 +431,9 @@ public class NodeBody {
 	 * 
 	 * <p>This method should only be called if all variables in the text
 	 * segments have been resolved.</p>
+	 *
+	 * <p>The body is executed through its compiled execution plan (see
+	 * {@link #getCompiledBody()}).</p>
 	 *  
 	 * @param variables the variable map
 	 * @param trimText true if trailing new lines should be trimmed, false if
@@ -289,36 +445,12 @@ public class NodeBody {
 	 */
 	public void execute(Map<String,Object> variables, boolean trimText,
 			NodeBody processedBody) throws EvaluationException {
-		for (Segment segment : segments) {
-			if (segment instanceof TextSegment) {
-				executeTextSegment((TextSegment)segment, variables,
-						processedBody);
-			} else {
-				executeCommandSegment((CommandSegment)segment, variables,
-						processedBody);
-			}
-		}
-		for (Reply reply : replies) {
-			processedBody.addReply(reply.execute(variables));
-		}
-		if (trimText)
-			processedBody.trimText();
-	}
-	
-	private void executeTextSegment(TextSegment segment,
-			Map<String,Object> variables, NodeBody processedBody) {
-		TextSegment processedText = new TextSegment(
-				segment.text.execute(variables));
-		processedBody.addSegment(processedText);
-	}
-	
-	private void executeCommandSegment(CommandSegment segment,
-			Map<String,Object> variables, NodeBody processedBody)
-			throws EvaluationException {
-		segment.command.executeBodyCommand(variables, processedBody);
+		getCompiledBody().execute(variables, trimText, processedBody);
 	}
 
 	public void trimWhitespace() {
+		checkNotFrozen();
+		compiledBody = null;
 		trimWhitespace(segments);
 	}
 
@@ -328,6 +460,8 @@ public class NodeBody {
 	}
 
 	public void removeLeadingWhitespace() {
+		checkNotFrozen();
+		compiledBody = null;
 		removeLeadingWhitespace(segments);
 	}
 
@@ -336,16 +470,20 @@ public class NodeBody {
 			Segment segment = segments.get(0);
 			if (!(segment instanceof TextSegment))
 				return;
-			TextSegment textSegment = (TextSegment)segment;
-			VariableString text = textSegment.getText();
+			VariableString text = new VariableString(((TextSegment)segment).getText());
 			text.removeLeadingWhitespace();
-			if (!text.getSegments().isEmpty())
+			if (!text.getSegments().isEmpty()) {
+				// replace rather than change the segment, as it may be shared
+				segments.set(0, new TextSegment(text));
 				return;
+			}
 			segments.remove(0);
 		}
 	}
 
 	public void removeTrailingWhitespace() {
+		checkNotFrozen();
+		compiledBody = null;
 		removeTrailingWhitespace(segments);
 	}
 
@@ -354,11 +492,12 @@ public class NodeBody {
 			Segment segment = segments.get(segments.size() - 1);
 			if (!(segment instanceof TextSegment))
 				return;
-			TextSegment textSegment = (TextSegment)segment;
-			VariableString text = textSegment.getText();
+			VariableString text = new VariableString(((TextSegment)segment).getText());
 			text.removeTrailingWhitespace();
-			if (!text.getSegments().isEmpty())
+			if (!text.getSegments().isEmpty()) {
+				segments.set(segments.size() - 1, new TextSegment(text));
 				return;
+			}
 			segments.remove(segments.size() - 1);
 		}
 	}
@@ -378,6 +517,8 @@ public class NodeBody {
 	}
 
 	public static abstract class Segment implements Cloneable {
+		private boolean frozen = false;
+
 		/**
 		 * Tries to find a reply with the specified ID within this segment. If
 		 * no such reply is found, this method returns null.
@@ -404,12 +545,35 @@ public class NodeBody {
 		public abstract void getWriteVariableNames(Set<String> varNames);
 
 		/**
-		 * Returns a deep copy of this segment.
+		 * Returns a deep copy of this segment. The copy is not frozen, but if this segment is
+		 * frozen, the copy may share its immutable parts.
 		 *
 		 * @return a deep copy of this segment
 		 */
 		@Override
 		public abstract Segment clone();
+
+		/**
+		 * Makes this segment immutable. Subclasses should override this method to freeze their
+		 * content and then call this method.
+		 */
+		public void freeze() {
+			frozen = true;
+		}
+
+		/**
+		 * Returns whether this segment has been frozen with {@link #freeze()}.
+		 *
+		 * @return true if this segment is frozen, false otherwise
+		 */
+		public boolean isFrozen() {
+			return frozen;
+		}
+
+		protected void checkNotFrozen() {
+			if (frozen)
+				throw new IllegalStateException("Segment is frozen");
+		}
 	}
 	
 	public static class TextSegment extends Segment {
@@ -420,7 +584,7 @@ public class NodeBody {
 		}
 
 		public TextSegment(TextSegment other) {
-			this.text = new VariableString(other.text);
+			this.text = VariableString.copyOf(other.text);
 		}
 
 		public VariableString getText() {
@@ -428,8 +592,15 @@ public class NodeBody {
 		}
 
 		public void setText(VariableString text) {
+			checkNotFrozen();
 			this.text = text;
 		}
+
+		@Override
+		public void freeze() {
+			text.freeze();
+			super.freeze();
+		}
 		
 		@Override
 		public Reply findReplyById(int replyId) {
@@ -464,7 +635,7 @@ public class NodeBody {
 		}
 
 		public CommandSegment(CommandSegment other) {
-			this.command = other.command.clone();
+			this.command = other.command.copy();
 		}
 
 		public Command getCommand() {
@@ -491,6 +662,12 @@ public class NodeBody {
 			return command.toString();
 		}
 
+		@Override
+		public void freeze() {
+			command.freeze();
+			super.freeze();
+		}
+
 		@Override
 		public CommandSegment clone() {
 			return new CommandSegment(this);
@@ -27,6 +27,7 @@
 
 package com.dialoguebranch.model;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -35,6 +36,7 @@ public class NodeHeader {
 	private String title;
 	private String speaker;
 	private Map<String,String> optionalTags;
+	private boolean frozen = false;
 	
 	// ---------- Constructors:
 	
@@ -75,22 +77,51 @@ public class NodeHeader {
 	// ---------- Setters:
 	
 	public void setTitle(String title) {
+		checkNotFrozen();
 		this.title = title;
 	}
 	
 	public void setSpeaker(String speaker) {
+		checkNotFrozen();
 		this.speaker = speaker;
 	}
 	
 	public void setOptionalTags(Map<String,String> optionalTags) {
+		checkNotFrozen();
 		this.optionalTags = optionalTags;
 	}
 	
 	// ---------- Utility:
 	
 	public void addOptionalTag(String key, String value) {
+		checkNotFrozen();
 		optionalTags.put(key,value);
 	}
+
+	/**
+	 * Makes this header immutable. After this method has been called, any method that changes
+	 * the header throws an {@link IllegalStateException}.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		optionalTags = Collections.unmodifiableMap(optionalTags);
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this header has been frozen with {@link #freeze()}.
+	 *
+	 * @return true if this header is frozen, false otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Node header is frozen");
+	}
 	
 	public String toString() {
 		String newline = System.getProperty("line.separator");
@@ -30,24 +30,26 @@ package com.dialoguebranch.model;
 import com.dialoguebranch.i18n.ContextTranslation;
 import com.dialoguebranch.i18n.Translatable;
 import com.dialoguebranch.i18n.TranslationContext;
-import com.dialoguebranch.i18n.Translator;
 import nl.rrd.utils.i18n.I18nLanguageFinder;
 
 import java.util.*;
 
 /**
  * A {@link Project} or Dialogue Branch Project is the top-level element of the Dialogue Branch
- * model.
+ * model. It keeps all dialogues and translations in memory, and they can be replaced with the
+ * setters of this class.
  *
  * @author Dennis Hofs (Roessingh Research and Development)
  * @author Harm op den Akker (Fruit Tree Labs)
  */
-public class Project {
-	private ProjectMetaData metaData;
-	private Map<FileDescriptor, Dialogue> dialogues = new LinkedHashMap<>();
-	private Map<FileDescriptor, Dialogue> sourceDialogues = new LinkedHashMap<>();
-	private Map<FileDescriptor,
-			Map<Translatable,List<ContextTranslation>>> translations = new LinkedHashMap<>();
+public class Project extends BaseProject {
+	// The dialogues, source dialogues and translations are kept together, so they can be replaced
+	// atomically (for example when changed files are reloaded while the project is in use).
+	private volatile Contents contents = new Contents(new LinkedHashMap<>(),
+			new LinkedHashMap<>(), new LinkedHashMap<>());
+
+	private final TranslatedDialogueCache translatedDialogueCache =
+			new TranslatedDialogueCache(TranslatedDialogueCache.DEFAULT_MAX_SIZE);
 
 	// --------------------------------------------------------
 	// -------------------- Constructor(s) --------------------
@@ -56,7 +58,7 @@ public class Project {
 	public Project() { }
 
 	public Project(ProjectMetaData metaData) {
-		this.metaData = metaData;
+		super(metaData);
 	}
 
 	// -----------------------------------------------------------
@@ -69,8 +71,9 @@ public class Project {
 	 *
 	 * @return the available dialogues (source and translations with default context)
 	 */
+	@Override
 	public Map<FileDescriptor, Dialogue> getDialogues() {
-		return dialogues;
+		return contents.dialogues();
 	}
 
 	/**
@@ -79,8 +82,9 @@ public class Project {
 	 *
 	 * @param dialogues the available dialogues (source and translations with default context)
 	 */
-	public void setDialogues(Map<FileDescriptor, Dialogue> dialogues) {
-		this.dialogues = dialogues;
+	public synchronized void setDialogues(Map<FileDescriptor, Dialogue> dialogues) {
+		contents = new Contents(dialogues, contents.sourceDialogues(), contents.translations());
+		translatedDialogueCache.clear();
 	}
 
 	/**
@@ -88,8 +92,9 @@ public class Project {
 	 *
 	 * @return the source dialogues (no translations)
 	 */
+	@Override
 	public Map<FileDescriptor, Dialogue> getSourceDialogues() {
-		return sourceDialogues;
+		return contents.sourceDialogues();
 	}
 
 	/**
@@ -97,8 +102,9 @@ public class Project {
 	 *
 	 * @param sourceDialogues the source dialogues (no translations)
 	 */
-	public void setSourceDialogues(Map<FileDescriptor, Dialogue> sourceDialogues) {
-		this.sourceDialogues = sourceDialogues;
+	public synchronized void setSourceDialogues(Map<FileDescriptor, Dialogue> sourceDialogues) {
+		contents = new Contents(contents.dialogues(), sourceDialogues, contents.translations());
+		translatedDialogueCache.clear();
 	}
 
 	/**
@@ -110,9 +116,10 @@ public class Project {
 	 *
 	 * @return the translations
 	 */
+	@Override
 	public Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>>
 	getTranslations() {
-		return translations;
+		return contents.translations();
 	}
 
 	/**
@@ -124,59 +131,35 @@ public class Project {
 	 *
 	 * @param translations the translations
 	 */
-	public void setTranslations(
+	public synchronized void setTranslations(
 			Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>>
 					translations) {
-		this.translations = translations;
-	}
-
-	/**
-	 * Returns the {@link ProjectMetaData} associated with this {@link Project}, or
-	 * {@code null} if no metadata is associated with this project.
-	 * @return the {@link ProjectMetaData} associated with this {@link Project}.
-	 */
-	public ProjectMetaData getMetaData() {
-		return metaData;
+		contents = new Contents(contents.dialogues(), contents.sourceDialogues(), translations);
+		translatedDialogueCache.clear();
 	}
 
 	/**
-	 * Sets the {@link ProjectMetaData} associated with this {@link Project}.
-	 * @param metaData the {@link ProjectMetaData} associated with this {@link Project}.
+	 * Replaces the dialogues, source dialogues and translations of this project in one atomic
+	 * step. Any thread that reads the project after this method returns, will see the new maps.
+	 * Methods such as {@link #getTranslatedDialogue(FileDescriptor, TranslationContext)
+	 * getTranslatedDialogue()} will never see a mix of old and new maps. The specified maps should
+	 * not be modified after they are passed to this method.
+	 *
+	 * @param dialogues the available dialogues (source and translations with default context)
+	 * @param sourceDialogues the source dialogues (no translations)
+	 * @param translations the translations
 	 */
-	public void setMetaData(ProjectMetaData metaData) {
-		this.metaData = metaData;
+	public synchronized void setContents(Map<FileDescriptor, Dialogue> dialogues,
+			Map<FileDescriptor, Dialogue> sourceDialogues,
+			Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>> translations) {
+		contents = new Contents(dialogues, sourceDialogues, translations);
+		translatedDialogueCache.clear();
 	}
 
 	// -------------------------------------------------------
 	// -------------------- Other Methods --------------------
 	// -------------------------------------------------------
 
-	/**
-	 * Returns a list of all supported languages in this {@link Project}. In the case of a
-	 * "simple" Dialogue Branch project (i.e. a folder with .dlb and possibly .json files without a
-	 * specific metadata file), this list is derived from the list of {@link FileDescriptor}s in
-	 * this {@link Project}. If a {@link ProjectMetaData} has been set (and a language map has
-	 * been defined therein), this information will be used instead.
-	 * @return a list of all supported languages in this {@link Project}.
-	 */
-	public List<String> getLanguages() {
-		List<String> result = new ArrayList<>();
-
-		// If no metaData has been defined, scrape languages from the set of available dialogues
-		if(metaData == null || metaData.getLanguageMap() == null) {
-			for(FileDescriptor fileDescription : dialogues.keySet()) {
-				if(!result.contains(fileDescription.getLanguage()))
-					result.add(fileDescription.getLanguage());
-			}
-
-		// If there is metadata, obtain the list of languages from there
-		} else {
-			return null; //TODO: Implement.
-		}
-
-		return result;
-	}
-
 	/**
 	 * Returns a translated dialogue for the specified translation context. This method first
 	 * searches a source dialogue for the specified description (name and language). If found, no
@@ -187,29 +170,35 @@ public class Project {
 	 *
 	 * <p>If no source dialogue or translation is found, this method returns null.</p>
 	 *
+	 * <p>Translated dialogues are cached per effective translation context (see {@link
+	 * TranslatedDialogueCache}). The returned dialogue may be shared with other callers and should
+	 * not be modified.</p>
+	 *
 	 * @param dialogueDescription the dialogue description (name and language)
 	 * @param context the translation context
 	 * @return the translated dialogue or null
 	 */
+	@Override
 	public Dialogue getTranslatedDialogue(FileDescriptor dialogueDescription,
 										  TranslationContext context) {
-		Dialogue dialogue = sourceDialogues.get(dialogueDescription);
+		Contents contents = this.contents;
+		Dialogue dialogue = contents.sourceDialogues().get(dialogueDescription);
 		if (dialogue != null)
 			return dialogue;
 		Map<Translatable,List<ContextTranslation>> translations =
-				this.translations.get(dialogueDescription);
+				contents.translations().get(dialogueDescription);
 		if (translations == null)
 			return null;
-		dialogue = findSourceDialogue(dialogueDescription.getDialogueName());
+		dialogue = findSourceDialogue(contents, dialogueDescription.getDialogueName());
 		if (dialogue == null)
 			return null;
-		Translator translator = new Translator(context, translations);
-		return translator.translate(dialogue);
+		return translatedDialogueCache.get(dialogueDescription, dialogue, translations, context);
 	}
 
-	private Dialogue findSourceDialogue(String dialogueName) {
+	private Dialogue findSourceDialogue(Contents contents, String dialogueName) {
+		Map<FileDescriptor, Dialogue> dialogues = contents.dialogues();
 		List<FileDescriptor> matches = new ArrayList<>();
-		for (FileDescriptor description : sourceDialogues.keySet()) {
+		for (FileDescriptor description : contents.sourceDialogues().keySet()) {
 			if (description.getDialogueName().equals(dialogueName))
 				matches.add(description);
 		}
@@ -229,4 +218,15 @@ public class Project {
 		else
 			return dialogues.get(lngMap.get(language));
 	}
+
+	/**
+	 * The maps with dialogues, source dialogues and translations of a project.
+	 *
+	 * @param dialogues the available dialogues (source and translations with default context)
+	 * @param sourceDialogues the source dialogues (no translations)
+	 * @param translations the translations
+	 */
+	private record Contents(Map<FileDescriptor, Dialogue> dialogues,
+			Map<FileDescriptor, Dialogue> sourceDialogues,
+			Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>> translations) { }
 }
@@ -28,6 +28,7 @@
 package com.dialoguebranch.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -65,6 +66,7 @@ public class Reply {
 	private NodeBody statement = null;
 	private NodePointer nodePointer;
 	private List<Command> commands = new ArrayList<>();
+	private boolean frozen = false;
 
 	/**
 	 * Constructs a new reply.
@@ -90,13 +92,20 @@ public class Reply {
 		this.nodePointer = nodePointer;
 	}
 
+	/**
+	 * Constructs a copy of another reply. The copy is not frozen, but if the other reply is
+	 * frozen, the copy shares its node pointer and any immutable commands.
+	 *
+	 * @param other the other reply
+	 */
 	public Reply(Reply other) {
 		this.replyId = other.replyId;
 		if (other.statement != null)
 			this.statement = new NodeBody(other.statement);
-		this.nodePointer = other.nodePointer.clone();
+		this.nodePointer = other.nodePointer.isFrozen() ? other.nodePointer :
+				other.nodePointer.clone();
 		for (Command cmd : other.commands) {
-			this.commands.add(cmd.clone());
+			this.commands.add(cmd.copy());
 		}
 	}
 
@@ -115,6 +124,7 @@ public class Reply {
 	 * @param replyId the reply ID
 	 */
 	public void setReplyId(int replyId) {
+		checkNotFrozen();
 		this.replyId = replyId;
 	}
 
@@ -135,6 +145,7 @@ public class Reply {
 	 * @param statement the statement or null
 	 */
 	public void setStatement(NodeBody statement) {
+		checkNotFrozen();
 		this.statement = statement;
 	}
 
@@ -154,6 +165,7 @@ public class Reply {
 	 * @param nodePointer the next node when this reply is chosen
 	 */
 	public void setNodePointer(NodePointer nodePointer) {
+		checkNotFrozen();
 		this.nodePointer = nodePointer;
 	}
 
@@ -173,6 +185,7 @@ public class Reply {
 	 * chosen
 	 */
 	public void setCommands(List<Command> commands) {
+		checkNotFrozen();
 		this.commands = commands;
 	}
 	
@@ -183,8 +196,41 @@ public class Reply {
 	 * chosen
 	 */
 	public void addCommand(Command command) {
+		checkNotFrozen();
 		commands.add(command);
 	}
+
+	/**
+	 * Makes this reply with its statement, node pointer and commands immutable. After this
+	 * method has been called, any method that changes the reply throws an {@link
+	 * IllegalStateException}.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		if (statement != null)
+			statement.freeze();
+		nodePointer.freeze();
+		for (Command command : commands) {
+			command.freeze();
+		}
+		commands = Collections.unmodifiableList(commands);
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this reply has been frozen with {@link #freeze()}.
+	 *
+	 * @return true if this reply is frozen, false otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Reply is frozen: " + replyId);
+	}
 	
 	/**
 	 * Retrieves all variable names that are read in this reply and adds them to
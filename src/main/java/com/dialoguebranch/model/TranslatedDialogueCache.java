@@ -0,0 +1,258 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.model;
+
+import com.dialoguebranch.i18n.ContextTranslation;
+import com.dialoguebranch.i18n.Translatable;
+import com.dialoguebranch.i18n.TranslationContext;
+import com.dialoguebranch.i18n.Translator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link TranslatedDialogueCache} keeps dialogues that were translated with a {@link
+ * TranslationContext}, so that a dialogue does not have to be copied and translated again every
+ * time it is started. It is used by {@link Project#getTranslatedDialogue(FileDescriptor,
+ * TranslationContext) Project.getTranslatedDialogue()}.
+ *
+ * <p>The only part of a translation context that affects a translation, are the genders of the
+ * speakers in the dialogue and the user. And they only matter if the translations have different
+ * versions for male and female speakers or addressees. Therefore the cache key consists of the
+ * dialogue description and the effective genders of the speakers in the dialogue, and if the
+ * translations of a dialogue do not have gender contexts, there is only one entry for all
+ * translation contexts.</p>
+ *
+ * <p>A cached dialogue is only returned if it was translated from the same source dialogue and
+ * translation map objects, so a reloaded dialogue or translation is translated again. The cache
+ * has a maximum size, and when it is full, the least recently used dialogue is removed.</p>
+ *
+ * <p>The returned dialogues are shared by all callers and should not be modified. This class is
+ * thread-safe.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class TranslatedDialogueCache {
+
+	/** The default maximum number of translated dialogues in the cache. */
+	public static final int DEFAULT_MAX_SIZE = 128;
+
+	private static final Set<String> GENDER_CONTEXTS = Set.of("male_speaker", "female_speaker",
+			"male_addressee", "female_addressee");
+
+	private final Map<Key,Entry> entries;
+	private final Map<FileDescriptor,Profile> profiles;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a new {@link TranslatedDialogueCache}.
+	 *
+	 * @param maxSize the maximum number of translated dialogues in the cache
+	 */
+	public TranslatedDialogueCache(int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+		entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+		profiles = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<FileDescriptor,Profile> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Returns the specified source dialogue translated with the specified translations and
+	 * context. If the cache contains a dialogue that was translated from the same source
+	 * dialogue and translations, with the same effective genders, it returns that dialogue.
+	 * Otherwise it creates a {@link com.dialoguebranch.i18n.LazyTranslatedDialogue
+	 * LazyTranslatedDialogue} and adds it to the cache, so nodes are only translated when they
+	 * are used.
+	 *
+	 * @param dialogueDescription the description of the translated dialogue
+	 * @param source the source dialogue
+	 * @param translations the translations
+	 * @param context the translation context
+	 * @return the translated dialogue
+	 */
+	public Dialogue get(FileDescriptor dialogueDescription, Dialogue source,
+			Map<Translatable,List<ContextTranslation>> translations,
+			TranslationContext context) {
+		Profile profile;
+		synchronized (this) {
+			profile = profiles.get(dialogueDescription);
+		}
+		if (profile == null || profile.source != source ||
+				profile.translations != translations) {
+			profile = createProfile(source, translations);
+			synchronized (this) {
+				profiles.put(dialogueDescription, profile);
+			}
+		}
+		List<TranslationContext.Gender> genders = getEffectiveGenders(profile, context);
+		Key key = new Key(dialogueDescription, genders);
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry != null && entry.source == source && entry.translations == translations)
+			return entry.dialogue;
+		// the cached dialogue translates nodes later for every caller with the same key, so it
+		// gets its own context with the effective genders rather than the caller's context
+		Translator translator = new Translator(createContext(profile, genders), translations);
+		Dialogue result = translator.translateLazily(source);
+		synchronized (this) {
+			entries.put(key, new Entry(source, translations, result));
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all dialogues from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		profiles.clear();
+	}
+
+	/**
+	 * Removes the dialogues with the specified description from the cache.
+	 *
+	 * @param dialogueDescription the dialogue description
+	 */
+	public synchronized void remove(FileDescriptor dialogueDescription) {
+		entries.keySet().removeIf(key -> key.dialogueDescription.equals(dialogueDescription));
+		profiles.remove(dialogueDescription);
+	}
+
+	/**
+	 * Returns the number of translated dialogues in the cache.
+	 *
+	 * @return the number of translated dialogues in the cache
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private Profile createProfile(Dialogue source,
+			Map<Translatable,List<ContextTranslation>> translations) {
+		boolean hasGenderContext = false;
+		for (List<ContextTranslation> list : translations.values()) {
+			for (ContextTranslation translation : list) {
+				if (!Collections.disjoint(translation.context(), GENDER_CONTEXTS)) {
+					hasGenderContext = true;
+					break;
+				}
+			}
+			if (hasGenderContext)
+				break;
+		}
+		List<String> speakers;
+		if (hasGenderContext) {
+			speakers = new ArrayList<>(source.getSpeakers());
+			Collections.sort(speakers);
+		} else {
+			speakers = Collections.emptyList();
+		}
+		return new Profile(source, translations, hasGenderContext, speakers);
+	}
+
+	private List<TranslationContext.Gender> getEffectiveGenders(Profile profile,
+			TranslationContext context) {
+		if (!profile.hasGenderContext)
+			return Collections.emptyList();
+		List<TranslationContext.Gender> result = new ArrayList<>(profile.speakers.size() + 1);
+		result.add(effectiveGender(context.getUserGender()));
+		for (String speaker : profile.speakers) {
+			TranslationContext.Gender gender;
+			if (context.getAgentGenders().containsKey(speaker))
+				gender = context.getAgentGenders().get(speaker);
+			else
+				gender = context.getDefaultAgentGender();
+			result.add(effectiveGender(gender));
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a translation context with the effective genders that were returned by {@link
+	 * #getEffectiveGenders(Profile, TranslationContext) getEffectiveGenders()}.
+	 */
+	private TranslationContext createContext(Profile profile,
+			List<TranslationContext.Gender> genders) {
+		TranslationContext context = new TranslationContext();
+		if (!profile.hasGenderContext)
+			return context;
+		context.setUserGender(genders.get(0));
+		Map<String,TranslationContext.Gender> agentGenders = new LinkedHashMap<>();
+		for (int i = 0; i < profile.speakers.size(); i++) {
+			agentGenders.put(profile.speakers.get(i), genders.get(i + 1));
+		}
+		context.setAgentGenders(agentGenders);
+		return context;
+	}
+
+	private TranslationContext.Gender effectiveGender(TranslationContext.Gender gender) {
+		// the translator treats an unknown gender as male
+		return gender == null ? TranslationContext.Gender.MALE : gender;
+	}
+
+	/**
+	 * The properties of a source dialogue and its translations that determine which parts of
+	 * a translation context are relevant.
+	 */
+	private record Profile(Dialogue source,
+			Map<Translatable,List<ContextTranslation>> translations, boolean hasGenderContext,
+			List<String> speakers) {
+	}
+
+	private record Key(FileDescriptor dialogueDescription,
+			List<TranslationContext.Gender> genders) {
+	}
+
+	private record Entry(Dialogue source, Map<Translatable,List<ContextTranslation>> translations,
+			Dialogue dialogue) {
+	}
+}
@@ -50,6 +50,15 @@ public class VariableString {
 	/** The list of {@link Segment}s that makes up this {@link VariableString}. */
 	private final List<Segment> segments = new ArrayList<>();
 
+	/** Whether this {@link VariableString} has been made immutable with {@link #freeze()}. */
+	private boolean frozen = false;
+
+	/** The number of characters that is reserved for the value of a variable when rendering. */
+	static final int VARIABLE_LENGTH_ESTIMATE = 16;
+
+	/** The rendered length estimate, computed when this {@link VariableString} is frozen. */
+	private int lengthEstimate = -1;
+
 	// --------------------------------------------------------
 	// -------------------- Constructor(s) --------------------
 	// --------------------------------------------------------
@@ -70,16 +79,35 @@ public class VariableString {
 
 	/**
 	 * Creates an instance of a {@link VariableString} from the contents of the {@code other} given
-	 * {@link VariableString}.
+	 * {@link VariableString}. If the other {@link VariableString} is frozen, its immutable segments
+	 * are shared rather than copied.
 	 *
 	 * @param other the other {@link VariableString} from which to copy its contents.
 	 */
 	public VariableString(VariableString other) {
+		if (other.frozen) {
+			this.segments.addAll(other.segments);
+			return;
+		}
 		for (Segment segment : other.segments) {
 			this.segments.add(segment.clone());
 		}
 	}
 
+	/**
+	 * Returns a copy of the given {@link VariableString} for use in a copied model object. If the
+	 * {@link VariableString} is frozen, it is immutable and this method returns the same instance.
+	 * Otherwise it returns a deep copy.
+	 *
+	 * @param other the {@link VariableString} to copy.
+	 * @return the copy or the same frozen instance.
+	 */
+	public static VariableString copyOf(VariableString other) {
+		if (other.frozen)
+			return other;
+		return new VariableString(other);
+	}
+
 	// -----------------------------------------------------------
 	// -------------------- Getters & Setters --------------------
 	// -----------------------------------------------------------
@@ -101,6 +129,7 @@ public class VariableString {
 	 * @param segment the {@link Segment} to add.
 	 */
 	public void addSegment(Segment segment) {
+		checkNotFrozen();
 		Segment lastSegment = null;
 		if (!segments.isEmpty())
 			lastSegment = segments.get(segments.size() - 1);
@@ -133,20 +162,11 @@ public class VariableString {
 	 * @return the processed variable string.
 	 */
 	public VariableString execute(Map<String,Object> variables) {
-		VariableString result = new VariableString();
-		for (Segment segment : segments) {
-			if (segment instanceof TextSegment) {
-				result.addSegment(segment);
-			} else {
-				VariableSegment varSegment = (VariableSegment)segment;
-				Object valueObj = null;
-				if (variables != null)
-					valueObj = variables.get(varSegment.variableName);
-				Value value = new Value(valueObj);
-				result.addSegment(new TextSegment(value.toString()));
-			}
-		}
-		return result;
+		if (segments.isEmpty())
+			return frozen ? this : new VariableString();
+		if (frozen && segments.size() == 1 && segments.get(0) instanceof TextSegment)
+			return this;
+		return new VariableString(evaluate(variables));
 	}
 
 	/**
@@ -157,11 +177,76 @@ public class VariableString {
 	 * @return the evaluated string.
 	 */
 	public String evaluate(Map<String,Object> variables) {
-		VariableString variableString = execute(variables);
-		if (variableString.segments.isEmpty())
+		if (segments.isEmpty())
 			return "";
-		TextSegment segment = (TextSegment)variableString.segments.get(0);
-		return segment.text;
+		if (segments.size() == 1 && segments.get(0) instanceof TextSegment textSegment)
+			return textSegment.text;
+		StringBuilder builder = new StringBuilder(getLengthEstimate());
+		appendTo(builder, variables);
+		return builder.toString();
+	}
+
+	/**
+	 * Evaluates this variable string with respect to the specified variables and appends the
+	 * result to the specified {@link StringBuilder}. This gives the same text as {@link
+	 * #evaluate(Map)}, but it does not create any intermediate strings or objects. Undefined
+	 * variables will be evaluated as string "null".
+	 *
+	 * @param builder the builder to which the evaluated string is appended.
+	 * @param variables the variable map (can be {@code null}).
+	 */
+	public void appendTo(StringBuilder builder, Map<String,Object> variables) {
+		for (Segment segment : segments) {
+			if (segment instanceof TextSegment textSegment) {
+				builder.append(textSegment.text);
+			} else {
+				String variableName = ((VariableSegment)segment).variableName;
+				appendValue(builder, variables == null ? null :
+						variables.get(variableName));
+			}
+		}
+	}
+
+	/**
+	 * Appends the string representation of a variable value to the specified {@link
+	 * StringBuilder}. This is the same as {@code new Value(value).toString()}, but strings and
+	 * null are appended without creating a {@link Value}.
+	 *
+	 * @param builder the builder to which the value is appended.
+	 * @param value the variable value (can be {@code null}).
+	 */
+	public static void appendValue(StringBuilder builder, Object value) {
+		if (value == null)
+			builder.append("null");
+		else if (value instanceof String string)
+			builder.append(string);
+		else
+			builder.append(new Value(value));
+	}
+
+	/**
+	 * Returns an estimate of the length of this variable string when it is evaluated. This is
+	 * the length of the text plus a fixed number of characters for each variable. It can be used
+	 * to size a {@link StringBuilder} for {@link #appendTo(StringBuilder, Map)}. For a frozen
+	 * {@link VariableString} the estimate is computed once when it is frozen.
+	 *
+	 * @return the estimated length.
+	 */
+	public int getLengthEstimate() {
+		if (lengthEstimate >= 0)
+			return lengthEstimate;
+		return computeLengthEstimate();
+	}
+
+	private int computeLengthEstimate() {
+		int length = 0;
+		for (Segment segment : segments) {
+			if (segment instanceof TextSegment textSegment)
+				length += textSegment.text.length();
+			else
+				length += VARIABLE_LENGTH_ESTIMATE;
+		}
+		return length;
 	}
 	
 	/**
@@ -222,14 +307,17 @@ public class VariableString {
 	 * or a variable.
 	 */
 	public void removeLeadingWhitespace() {
+		checkNotFrozen();
 		while (!segments.isEmpty()) {
 			Segment segment = segments.get(0);
 			if (!(segment instanceof TextSegment textSegment))
 				return;
             String content = textSegment.getText().replaceAll("^\\s+", "");
-			textSegment.setText(content);
-			if (!content.isEmpty())
+			if (!content.isEmpty()) {
+				// replace rather than change the segment, as it may be shared
+				segments.set(0, new TextSegment(content));
 				return;
+			}
 			segments.remove(0);
 		}
 	}
@@ -239,18 +327,50 @@ public class VariableString {
 	 * encounters text or a variable.
 	 */
 	public void removeTrailingWhitespace() {
+		checkNotFrozen();
 		while (!segments.isEmpty()) {
 			Segment segment = segments.get(segments.size() - 1);
 			if (!(segment instanceof TextSegment textSegment))
 				return;
             String content = textSegment.getText().replaceAll("\\s+$", "");
-			textSegment.setText(content);
-			if (!content.isEmpty())
+			if (!content.isEmpty()) {
+				segments.set(segments.size() - 1, new TextSegment(content));
 				return;
+			}
 			segments.remove(segments.size() - 1);
 		}
 	}
 
+	/**
+	 * Makes this {@link VariableString} and its segments immutable. After this method has been
+	 * called, any method that changes this {@link VariableString} or one of its segments throws an
+	 * {@link IllegalStateException}. A frozen {@link VariableString} can be safely shared between
+	 * dialogues and threads.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		for (Segment segment : segments) {
+			segment.frozen = true;
+		}
+		lengthEstimate = computeLengthEstimate();
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this {@link VariableString} has been frozen with {@link #freeze()}.
+	 *
+	 * @return {@code true} if this {@link VariableString} is frozen, {@code false} otherwise.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("VariableString is frozen");
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
@@ -285,11 +405,23 @@ public class VariableString {
 	 */
 	public static abstract class Segment implements Cloneable {
 
+		/** Whether this {@link Segment} is part of a frozen {@link VariableString}. */
+		private boolean frozen = false;
+
 		/**
 		 * Creates an instance of the implementing subclass.
 		 */
 		public Segment() { }
 
+		/**
+		 * Throws an {@link IllegalStateException} if this {@link Segment} is part of a frozen
+		 * {@link VariableString}.
+		 */
+		protected void checkNotFrozen() {
+			if (frozen)
+				throw new IllegalStateException("VariableString segment is frozen");
+		}
+
 		@Override
 		public abstract Segment clone();
 	}
@@ -332,6 +464,7 @@ public class VariableString {
 		 * @param text the text contents of this {@link TextSegment}.
 		 */
 		public void setText(String text) {
+			checkNotFrozen();
 			this.text = text;
 		}
 		
@@ -416,6 +549,7 @@ public class VariableString {
 		 * @param variableName the variable name of this {@link VariableSegment}.
 		 */
 		public void setVariableName(String variableName) {
+			checkNotFrozen();
 			this.variableName = variableName;
 		}
 
@@ -28,6 +28,7 @@
 package com.dialoguebranch.model.command;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -122,9 +123,9 @@ public class ActionCommand extends AttributesCommand {
 	 */
 	public ActionCommand(ActionCommand other) {
 		this.type = other.type;
-		this.value = new VariableString(other.value);
+		this.value = VariableString.copyOf(other.value);
 		for (String key : other.parameters.keySet()) {
-			this.parameters.put(key, new VariableString(other.parameters.get(key)));
+			this.parameters.put(key, VariableString.copyOf(other.parameters.get(key)));
 		}
 	}
 
@@ -148,6 +149,7 @@ public class ActionCommand extends AttributesCommand {
 	 * @param type the type of this {@link ActionCommand}.
 	 */
 	public void setType(String type) {
+		checkNotFrozen();
 		this.type = type;
 	}
 
@@ -166,6 +168,7 @@ public class ActionCommand extends AttributesCommand {
 	 * @param value the contents of the 'value' part of the ActionCommand as a VariableString.
 	 */
 	public void setValue(VariableString value) {
+		checkNotFrozen();
 		this.value = value;
 	}
 
@@ -184,6 +187,7 @@ public class ActionCommand extends AttributesCommand {
 	 * @param parameters the optional parameters that are part of this ActionCommand.
 	 */
 	public void setParameters(Map<String, VariableString> parameters) {
+		checkNotFrozen();
 		this.parameters = parameters;
 	}
 
@@ -200,9 +204,22 @@ public class ActionCommand extends AttributesCommand {
 	 *              Variables.
 	 */
 	public void addParameter(String name, VariableString value) {
+		checkNotFrozen();
 		parameters.put(name, value);
 	}
 
+	@Override
+	public void freeze() {
+		if (isFrozen())
+			return;
+		value.freeze();
+		for (VariableString parameterValue : parameters.values()) {
+			parameterValue.freeze();
+		}
+		parameters = Collections.unmodifiableMap(parameters);
+		super.freeze();
+	}
+
 	@Override
 	public Reply findReplyById(int replyId) {
 		return null;
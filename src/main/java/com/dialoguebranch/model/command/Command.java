@@ -43,6 +43,39 @@ import com.dialoguebranch.model.NodeBody;
  */
 public abstract class Command implements Cloneable {
 
+	private boolean frozen = false;
+
+	/**
+	 * Makes this command immutable, including any nested bodies and variable strings. After
+	 * this method has been called, any method that changes the command throws an {@link
+	 * IllegalStateException}. A frozen command can be safely shared between dialogues and
+	 * threads. Subclasses that contain mutable objects should override this method, freeze
+	 * those objects and then call this method.
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this command has been frozen with {@link #freeze()}.
+	 *
+	 * @return true if this command is frozen, false otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Throws an {@link IllegalStateException} if this command is frozen. This should be called
+	 * at the start of every method that changes the command.
+	 */
+	protected void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("Command is frozen: " +
+					getClass().getSimpleName());
+		}
+	}
+
 	/**
 	 * Tries to find a reply with the specified ID within this command. If no such reply is found,
 	 * this method returns {@code null}.
@@ -89,11 +122,27 @@ public abstract class Command implements Cloneable {
 			NodeBody processedBody) throws EvaluationException;
 
 	/**
-	 * Returns a deep copy of this command.
+	 * Returns a deep copy of this command. The copy is not frozen. If this command is frozen,
+	 * the copy may share immutable parts with this command, such as frozen variable strings.
 	 *
 	 * @return a deep copy of this command
 	 */
 	@Override
 	public abstract Command clone();
 
+	/**
+	 * Returns a copy of this command for a copied node body or reply. If this command is frozen,
+	 * it is immutable and can be shared, so this method returns the same instance. Otherwise it
+	 * returns {@link #clone()}. Commands that contain node bodies override this method to always
+	 * return a clone, so that the bodies of a copied node can still be changed, for example when
+	 * a node is translated.
+	 *
+	 * @return the copy or this frozen command
+	 */
+	public Command copy() {
+		if (frozen)
+			return this;
+		return clone();
+	}
+
 }
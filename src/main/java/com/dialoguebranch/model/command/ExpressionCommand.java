@@ -168,6 +168,46 @@ public abstract class ExpressionCommand extends Command {
 		}
 	}
 
+	/**
+	 * Parses a single expression from the specified code string, as it is returned by the
+	 * toString() method of an {@link Expression}. The expression is parsed with the same
+	 * configuration as expressions in commands, so variables should start with a dollar sign.
+	 *
+	 * @param code the expression code
+	 * @return the expression
+	 * @throws LineNumberParseException if the code does not contain exactly one valid expression
+	 */
+	public static Expression parseExpression(String code)
+			throws LineNumberParseException {
+		LineColumnNumberReader reader = new LineColumnNumberReader(
+				new StringReader(code));
+		Tokenizer tokenizer = new Tokenizer(reader);
+		ExpressionParser parser = new ExpressionParser(tokenizer);
+		try {
+			try {
+				parser.getConfig().setAllowDollarVariables(true);
+				parser.getConfig().setAllowPlainVariables(false);
+				Expression expression = parser.readExpression();
+				if (expression == null) {
+					throw new LineNumberParseException("Expression not found",
+							tokenizer.getLineNum(), tokenizer.getColNum());
+				}
+				int postExprLine = tokenizer.getLineNum();
+				int postExprCol = tokenizer.getColNum();
+				if (tokenizer.readToken() != null) {
+					throw new LineNumberParseException(
+							"Unexpected content after expression",
+							postExprLine, postExprCol);
+				}
+				return expression;
+			} finally {
+				parser.close();
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException(ex.getMessage(), ex);
+		}
+	}
+
 	private static ParseContentResult parseCommandContent(
             BodyToken cmdStartToken, ReadContentResult content,
             Tokenizer tokenizer, ExpressionParser parser, int lineOff,
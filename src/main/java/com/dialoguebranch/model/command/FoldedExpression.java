@@ -0,0 +1,145 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.model.command;
+
+import nl.rrd.utils.expressions.EvaluationException;
+import nl.rrd.utils.expressions.Expression;
+import nl.rrd.utils.expressions.Value;
+import nl.rrd.utils.expressions.types.AssignExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link FoldedExpression} wraps an {@link Expression} with constant folding. It is created once,
+ * when the execution plan of a node is compiled, and then evaluated every time the node is
+ * executed. It keeps the semantics of {@link Expression#evaluate(Map)}.
+ *
+ * <p>An expression without variables and without assignments is evaluated once when it is folded,
+ * and evaluating it just returns that constant value. If the evaluation fails, it is not folded,
+ * so the error is still thrown when the expression is evaluated. Any other expression is
+ * evaluated by the expression tree on the variable map, exactly like an unfolded
+ * expression.</p>
+ *
+ * <p>A {@link FoldedExpression} is immutable and can be evaluated by multiple threads at the same
+ * time.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public final class FoldedExpression {
+
+	private final Expression expression;
+	private final Value constant;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	private FoldedExpression(Expression expression, Value constant) {
+		this.expression = expression;
+		this.constant = constant;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the expression that was folded.
+	 *
+	 * @return the expression
+	 */
+	public Expression getExpression() {
+		return expression;
+	}
+
+	/**
+	 * Returns true if the expression was evaluated when it was folded, so every evaluation
+	 * returns the same constant value.
+	 *
+	 * @return true if the expression is a constant, false otherwise
+	 */
+	public boolean isConstant() {
+		return constant != null;
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Folds the specified expression. If it is a constant expression, it is evaluated now.
+	 *
+	 * @param expression the expression
+	 * @return the folded expression
+	 */
+	public static FoldedExpression fold(Expression expression) {
+		Value constant = null;
+		if (expression.getVariableNames().isEmpty() && !hasAssignment(expression)) {
+			try {
+				constant = expression.evaluate(Map.of());
+			} catch (EvaluationException ex) {
+				// not folded, so the exception is thrown on evaluation
+			}
+		}
+		return new FoldedExpression(expression, constant);
+	}
+
+	private static boolean hasAssignment(Expression expression) {
+		List<Expression> list = new ArrayList<>();
+		list.add(expression);
+		list.addAll(expression.getDescendants());
+		for (Expression expr : list) {
+			if (expr instanceof AssignExpression)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluates the expression with respect to the specified variable map. This has the same
+	 * result as {@link Expression#evaluate(Map)}.
+	 *
+	 * @param variables the variable map
+	 * @return the result of the expression
+	 * @throws EvaluationException if the expression cannot be evaluated
+	 */
+	public Value evaluate(Map<String,Object> variables) throws EvaluationException {
+		if (constant != null)
+			return constant;
+		return expression.evaluate(variables);
+	}
+
+	@Override
+	public String toString() {
+		return expression.toString();
+	}
+}
@@ -63,6 +63,19 @@ public class IfCommand extends ExpressionCommand {
 			this.elseClause = new NodeBody(other.elseClause);
 	}
 
+	@Override
+	public void freeze() {
+		if (isFrozen())
+			return;
+		for (Clause ifClause : ifClauses) {
+			ifClause.freeze();
+		}
+		ifClauses = Collections.unmodifiableList(ifClauses);
+		if (elseClause != null)
+			elseClause.freeze();
+		super.freeze();
+	}
+
 	/**
 	 * Returns the if clauses. They should be processed from first to last.
 	 * There should be at least one clause. That is the "if" clause. Any
@@ -82,6 +95,7 @@ public class IfCommand extends ExpressionCommand {
 	 * @param ifClauses the if clauses
 	 */
 	public void setIfClauses(List<Clause> ifClauses) {
+		checkNotFrozen();
 		this.ifClauses = ifClauses;
 	}
 	
@@ -93,6 +107,7 @@ public class IfCommand extends ExpressionCommand {
 	 * @param ifClause the if clause
 	 */
 	public void addIfClause(Clause ifClause) {
+		checkNotFrozen();
 		ifClauses.add(ifClause);
 	}
 
@@ -113,6 +128,7 @@ public class IfCommand extends ExpressionCommand {
 	 * @param elseClause the else clause or null
 	 */
 	public void setElseClause(NodeBody elseClause) {
+		checkNotFrozen();
 		this.elseClause = elseClause;
 	}
 	
@@ -269,6 +285,11 @@ public class IfCommand extends ExpressionCommand {
 		return new IfCommand(this);
 	}
 
+	@Override
+	public IfCommand copy() {
+		return clone();
+	}
+
 	/**
 	 * This class models a clause of an if statement. That is the "if" clause
 	 * or an "elseif" clause.
@@ -277,6 +298,8 @@ public class IfCommand extends ExpressionCommand {
 		private Expression expression;
 		private NodeBody statement;
 
+		private boolean frozen = false;
+
 		/**
 		 * Constructs a new if clause.
 		 * 
@@ -295,6 +318,28 @@ public class IfCommand extends ExpressionCommand {
 			this.statement = new NodeBody(other.statement);
 		}
 
+		/**
+		 * Makes this clause immutable. See {@link Command#freeze()}.
+		 */
+		public void freeze() {
+			statement.freeze();
+			frozen = true;
+		}
+
+		/**
+		 * Returns whether this clause has been frozen with {@link #freeze()}.
+		 *
+		 * @return true if this clause is frozen, false otherwise
+		 */
+		public boolean isFrozen() {
+			return frozen;
+		}
+
+		private void checkNotFrozen() {
+			if (frozen)
+				throw new IllegalStateException("Clause is frozen");
+		}
+
 		/**
 		 * Returns the if expression that should be evaluated as a boolean.
 		 * 
@@ -310,6 +355,7 @@ public class IfCommand extends ExpressionCommand {
 		 * @param expression the if expression
 		 */
 		public void setExpression(Expression expression) {
+			checkNotFrozen();
 			this.expression = expression;
 		}
 
@@ -330,6 +376,7 @@ public class IfCommand extends ExpressionCommand {
 		 * @param statement the statement
 		 */
 		public void setStatement(NodeBody statement) {
+			checkNotFrozen();
 			this.statement = statement;
 		}
 	}
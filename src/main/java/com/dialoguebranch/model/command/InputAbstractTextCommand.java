@@ -79,6 +79,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	}
 
 	public void setVariableName(String variableName) {
+		checkNotFrozen();
 		this.variableName = variableName;
 	}
 
@@ -97,6 +98,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param min the minimum number of characters needed for this text input command.
 	 */
 	public void setMin(Integer min) {
+		checkNotFrozen();
 		this.min = min;
 	}
 
@@ -115,6 +117,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param max the maximum number of characters allowed for this text input command.
 	 */
 	public void setMax(Integer max) {
+		checkNotFrozen();
 		this.max = max;
 	}
 
@@ -132,6 +135,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param allowNumbers whether or not numbers are allowed in this text input command.
 	 */
 	public void setAllowNumbers(Boolean allowNumbers) {
+		checkNotFrozen();
 		if(allowNumbers != null) this.allowNumbers = allowNumbers;
 		else this.allowNumbers = Boolean.TRUE;
 	}
@@ -152,6 +156,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param allowSpecialCharacters whether or not special characters are allowed in this text input command.
 	 */
 	public void setAllowSpecialCharacters(Boolean allowSpecialCharacters) {
+		checkNotFrozen();
 		if(allowSpecialCharacters != null) this.allowSpecialCharacters = allowSpecialCharacters;
 		else this.allowSpecialCharacters = Boolean.TRUE;
 	}
@@ -170,6 +175,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param allowSpaces whether or not spaces are allowed in this text input command.
 	 */
 	public void setAllowSpaces(Boolean allowSpaces) {
+		checkNotFrozen();
 		if(allowSpaces != null) this.allowSpaces = allowSpaces;
 		else this.allowSpaces = Boolean.TRUE;
 	}
@@ -188,6 +194,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param capCharacters whether or not to hint capitalization on character level.
 	 */
 	public void setCapCharacters(Boolean capCharacters) {
+		checkNotFrozen();
 		if(capCharacters != null) this.capCharacters = capCharacters;
 		else this.capCharacters = Boolean.FALSE;
 	}
@@ -206,6 +213,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param capWords whether or not to hint capitalization on word level.
 	 */
 	public void setCapWords(Boolean capWords) {
+		checkNotFrozen();
 		if(capWords != null) this.capWords = capWords;
 		else this.capWords = Boolean.FALSE;
 	}
@@ -224,6 +232,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param capSentences whether or not to hint capitalization on character level.
 	 */
 	public void setCapSentences(Boolean capSentences) {
+		checkNotFrozen();
 		if(capSentences != null) this.capSentences = capSentences;
 		else this.capSentences = Boolean.FALSE;
 	}
@@ -242,6 +251,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param forceCapCharacters whether or not to force capitalization on character level.
 	 */
 	public void setForceCapCharacters(Boolean forceCapCharacters) {
+		checkNotFrozen();
 		if(forceCapCharacters != null) this.forceCapCharacters = forceCapCharacters;
 		else this.forceCapCharacters = Boolean.FALSE;
 	}
@@ -260,6 +270,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param forceCapWords whether or not to force capitalization on word level.
 	 */
 	public void setForceCapWords(Boolean forceCapWords) {
+		checkNotFrozen();
 		if(forceCapWords != null) this.forceCapWords = forceCapWords;
 		else this.forceCapWords = Boolean.FALSE;
 	}
@@ -278,6 +289,7 @@ public abstract class InputAbstractTextCommand extends InputCommand {
 	 * @param forceCapSentences whether or not to force capitalization on sentence level.
 	 */
 	public void setForceCapSentences(Boolean forceCapSentences) {
+		checkNotFrozen();
 		if(forceCapSentences != null) this.forceCapSentences = forceCapSentences;
 		else this.forceCapSentences = Boolean.FALSE;
 	}
@@ -88,6 +88,7 @@ public abstract class InputCommand extends AttributesCommand {
 	 * @param type the type of input command
 	 */
 	public void setType(String type) {
+		checkNotFrozen();
 		this.type = type;
 	}
 
@@ -110,6 +111,7 @@ public abstract class InputCommand extends AttributesCommand {
 	 * @param description the description or null
 	 */
 	public void setDescription(String description) {
+		checkNotFrozen();
 		this.description = description;
 	}
 
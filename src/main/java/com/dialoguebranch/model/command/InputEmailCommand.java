@@ -57,6 +57,7 @@ public class InputEmailCommand extends InputCommand {
 	}
 
 	public void setVariableName(String variableName) {
+		checkNotFrozen();
 		this.variableName = variableName;
 	}
 
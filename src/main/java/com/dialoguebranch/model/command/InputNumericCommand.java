@@ -61,6 +61,7 @@ public class InputNumericCommand extends InputCommand {
 	}
 
 	public void setVariableName(String variableName) {
+		checkNotFrozen();
 		this.variableName = variableName;
 	}
 
@@ -69,6 +70,7 @@ public class InputNumericCommand extends InputCommand {
 	}
 
 	public void setMin(Integer min) {
+		checkNotFrozen();
 		this.min = min;
 	}
 
@@ -77,6 +79,7 @@ public class InputNumericCommand extends InputCommand {
 	}
 
 	public void setMax(Integer max) {
+		checkNotFrozen();
 		this.max = max;
 	}
 
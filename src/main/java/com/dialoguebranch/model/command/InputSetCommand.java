@@ -57,7 +57,19 @@ public class InputSetCommand extends InputCommand {
 		return options;
 	}
 
+	@Override
+	public void freeze() {
+		if (isFrozen())
+			return;
+		for (Option option : options) {
+			option.freeze();
+		}
+		options = Collections.unmodifiableList(options);
+		super.freeze();
+	}
+
 	public void setOptions(List<Option> options) {
+		checkNotFrozen();
 		this.options = options;
 	}
 
@@ -168,13 +180,38 @@ public class InputSetCommand extends InputCommand {
 		private String variableName = null;
 		private VariableString text = null;
 
+		private boolean frozen = false;
+
 		public Option() {
 		}
 
 		public Option(Option other) {
 			this.variableName = other.variableName;
 			if (other.text != null)
-				this.text = new VariableString(other.text);
+				this.text = VariableString.copyOf(other.text);
+		}
+
+		/**
+		 * Makes this option immutable. See {@link Command#freeze()}.
+		 */
+		public void freeze() {
+			if (text != null)
+				text.freeze();
+			frozen = true;
+		}
+
+		/**
+		 * Returns whether this option has been frozen with {@link #freeze()}.
+		 *
+		 * @return true if this option is frozen, false otherwise
+		 */
+		public boolean isFrozen() {
+			return frozen;
+		}
+
+		private void checkNotFrozen() {
+			if (frozen)
+				throw new IllegalStateException("Option is frozen");
 		}
 
 		public String getVariableName() {
@@ -182,6 +219,7 @@ public class InputSetCommand extends InputCommand {
 		}
 
 		public void setVariableName(String variableName) {
+			checkNotFrozen();
 			this.variableName = variableName;
 		}
 
@@ -190,6 +228,7 @@ public class InputSetCommand extends InputCommand {
 		}
 
 		public void setText(VariableString text) {
+			checkNotFrozen();
 			this.text = text;
 		}
 	}
@@ -62,11 +62,24 @@ public class InputTimeCommand extends InputCommand {
 		this.variableName = other.variableName;
 		this.granularityMinutes = other.granularityMinutes;
 		if (other.startTime != null)
-			this.startTime = new VariableString(other.startTime);
+			this.startTime = VariableString.copyOf(other.startTime);
 		if (other.minTime != null)
-			this.minTime = new VariableString(other.minTime);
+			this.minTime = VariableString.copyOf(other.minTime);
 		if (other.maxTime != null)
-			this.maxTime = new VariableString(other.maxTime);
+			this.maxTime = VariableString.copyOf(other.maxTime);
+	}
+
+	@Override
+	public void freeze() {
+		if (isFrozen())
+			return;
+		if (startTime != null)
+			startTime.freeze();
+		if (minTime != null)
+			minTime.freeze();
+		if (maxTime != null)
+			maxTime.freeze();
+		super.freeze();
 	}
 
 	public String getVariableName() {
@@ -74,6 +87,7 @@ public class InputTimeCommand extends InputCommand {
 	}
 
 	public void setVariableName(String variableName) {
+		checkNotFrozen();
 		this.variableName = variableName;
 	}
 
@@ -82,6 +96,7 @@ public class InputTimeCommand extends InputCommand {
 	}
 
 	public void setGranularityMinutes(int granularityMinutes) {
+		checkNotFrozen();
 		this.granularityMinutes = granularityMinutes;
 	}
 
@@ -90,6 +105,7 @@ public class InputTimeCommand extends InputCommand {
 	}
 
 	public void setStartTime(VariableString startTime) {
+		checkNotFrozen();
 		this.startTime = startTime;
 	}
 
@@ -98,6 +114,7 @@ public class InputTimeCommand extends InputCommand {
 	}
 
 	public void setMinTime(VariableString minTime) {
+		checkNotFrozen();
 		this.minTime = minTime;
 	}
 
@@ -106,6 +123,7 @@ public class InputTimeCommand extends InputCommand {
 	}
 
 	public void setMaxTime(VariableString maxTime) {
+		checkNotFrozen();
 		this.maxTime = maxTime;
 	}
 
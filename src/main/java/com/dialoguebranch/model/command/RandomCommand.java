@@ -59,6 +59,17 @@ public class RandomCommand extends AttributesCommand {
 		}
 	}
 
+	@Override
+	public void freeze() {
+		if (isFrozen())
+			return;
+		for (Clause clause : clauses) {
+			clause.freeze();
+		}
+		clauses = Collections.unmodifiableList(clauses);
+		super.freeze();
+	}
+
 	/**
 	 * Returns the clauses. There should be at least one clause.
 	 * 
@@ -74,6 +85,7 @@ public class RandomCommand extends AttributesCommand {
 	 * @param clauses the clauses
 	 */
 	public void setClauses(List<Clause> clauses) {
+		checkNotFrozen();
 		this.clauses = clauses;
 	}
 	
@@ -83,6 +95,7 @@ public class RandomCommand extends AttributesCommand {
 	 * @param clause the clause
 	 */
 	public void addClause(Clause clause) {
+		checkNotFrozen();
 		clauses.add(clause);
 	}
 
@@ -120,22 +133,29 @@ public class RandomCommand extends AttributesCommand {
 	@Override
 	public void executeBodyCommand(Map<String, Object> variables,
 			NodeBody processedBody) throws EvaluationException {
+		Clause selClause = clauses.get(selectClauseIndex());
+		selClause.statement.execute(variables, false, processedBody);
+	}
+
+	/**
+	 * Randomly selects a clause, where the probability of each clause is proportional to its
+	 * weight, and returns its index.
+	 *
+	 * @return the index of the selected clause
+	 */
+	public int selectClauseIndex() {
 		float totalWeight = 0;
 		for (Clause clause : clauses) {
 			totalWeight += clause.weight;
 		}
 		float selWeight = random.nextFloat() * totalWeight;
 		float currWeight = 0;
-		Clause selClause = null;
-		for (int i = 0; selClause == null && i < clauses.size(); i++) {
-			Clause clause = clauses.get(i);
-			currWeight += clause.weight;
+		for (int i = 0; i < clauses.size(); i++) {
+			currWeight += clauses.get(i).weight;
 			if (selWeight <= currWeight)
-				selClause = clause;
+				return i;
 		}
-		if (selClause == null)
-			selClause = clauses.get(clauses.size() - 1);
-		selClause.statement.execute(variables, false, processedBody);
+		return clauses.size() - 1;
 	}
 
 	@Override
@@ -202,6 +222,11 @@ public class RandomCommand extends AttributesCommand {
 		return new RandomCommand(this);
 	}
 
+	@Override
+	public RandomCommand copy() {
+		return clone();
+	}
+
 	/**
 	 * This class models a clause of a "random" statement. That is the "random"
 	 * clause or an "or" clause.
@@ -210,6 +235,8 @@ public class RandomCommand extends AttributesCommand {
 		private float weight;
 		private NodeBody statement;
 
+		private boolean frozen = false;
+
 		/**
 		 * Constructs a new clause.
 		 * 
@@ -227,6 +254,28 @@ public class RandomCommand extends AttributesCommand {
 			this.statement = new NodeBody(other.statement);
 		}
 
+		/**
+		 * Makes this clause immutable. See {@link Command#freeze()}.
+		 */
+		public void freeze() {
+			statement.freeze();
+			frozen = true;
+		}
+
+		/**
+		 * Returns whether this clause has been frozen with {@link #freeze()}.
+		 *
+		 * @return true if this clause is frozen, false otherwise
+		 */
+		public boolean isFrozen() {
+			return frozen;
+		}
+
+		private void checkNotFrozen() {
+			if (frozen)
+				throw new IllegalStateException("Clause is frozen");
+		}
+
 		/**
 		 * Returns the weight for this clause.
 		 *
@@ -242,6 +291,7 @@ public class RandomCommand extends AttributesCommand {
 		 * @param weight the weight for this clause
 		 */
 		public void setWeight(float weight) {
+			checkNotFrozen();
 			this.weight = weight;
 		}
 
@@ -262,6 +312,7 @@ public class RandomCommand extends AttributesCommand {
 		 * @param statement the statement
 		 */
 		public void setStatement(NodeBody statement) {
+			checkNotFrozen();
 			this.statement = statement;
 		}
 	}
@@ -53,6 +53,7 @@ import com.dialoguebranch.parser.BodyToken;
  */
 public class SetCommand extends ExpressionCommand {
 	private AssignExpression expression;
+	private volatile FoldedExpression foldedExpression = null;
 	
 	public SetCommand(AssignExpression expression) {
 		this.expression = expression;
@@ -67,7 +68,24 @@ public class SetCommand extends ExpressionCommand {
 	}
 
 	public void setExpression(AssignExpression expression) {
+		checkNotFrozen();
 		this.expression = expression;
+		this.foldedExpression = null;
+	}
+
+	/**
+	 * Returns the assign expression wrapped in a {@link FoldedExpression}. It is created on the
+	 * first call and then reused.
+	 *
+	 * @return the folded expression
+	 */
+	public FoldedExpression getFoldedExpression() {
+		FoldedExpression result = foldedExpression;
+		if (result == null) {
+			result = FoldedExpression.fold(expression);
+			foldedExpression = result;
+		}
+		return result;
 	}
 	
 	@Override
@@ -92,7 +110,7 @@ public class SetCommand extends ExpressionCommand {
 	@Override
 	public void executeBodyCommand(Map<String, Object> variables,
 			NodeBody processedBody) throws EvaluationException {
-		expression.evaluate(variables);
+		getFoldedExpression().evaluate(variables);
 	}
 
 	@Override
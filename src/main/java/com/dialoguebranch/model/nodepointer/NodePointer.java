@@ -48,6 +48,8 @@ public abstract class NodePointer implements Cloneable {
 	/** The identifier of the Node to which this NodePointer is pointing */
 	private String targetNodeId;
 
+	private boolean frozen = false;
+
 	// -------------------------------------------------------- //
 	// -------------------- Constructor(s) -------------------- //
 	// -------------------------------------------------------- //
@@ -93,6 +95,7 @@ public abstract class NodePointer implements Cloneable {
 	 * @param originNodeId the identifier of the Node from which this pointer is originating.
 	 */
 	public void setOriginNodeId(String originNodeId) {
+		checkNotFrozen();
 		this.originNodeId = originNodeId;
 	}
 
@@ -111,9 +114,32 @@ public abstract class NodePointer implements Cloneable {
 	 * @param targetNodeId the identifier of the {@link Node} that this pointer is pointing to.
 	 */
 	public void setTargetNodeId(String targetNodeId) {
+		checkNotFrozen();
 		this.targetNodeId = targetNodeId;
 	}
 
+	/**
+	 * Makes this {@link NodePointer} immutable. After this method has been called, the setters
+	 * throw an {@link IllegalStateException}.
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether this {@link NodePointer} has been frozen with {@link #freeze()}.
+	 *
+	 * @return {@code true} if this {@link NodePointer} is frozen, {@code false} otherwise
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("NodePointer is frozen");
+	}
+
 	// -------------------------------------------------------
 	// -------------------- Other Methods --------------------
 	// -------------------------------------------------------
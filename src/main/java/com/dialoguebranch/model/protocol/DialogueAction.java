@@ -30,6 +30,7 @@ package com.dialoguebranch.model.protocol;
 import com.dialoguebranch.model.VariableString;
 import com.dialoguebranch.model.command.ActionCommand;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -44,6 +45,7 @@ public class DialogueAction {
 	private String type;
 	private String value;
 	private Map<String,String> parameters = new LinkedHashMap<>();
+	private boolean frozen = false;
 	
 	public DialogueAction() {
 	}
@@ -64,6 +66,7 @@ public class DialogueAction {
 	}
 
 	public void setType(String type) {
+		checkNotFrozen();
 		this.type = type;
 	}
 
@@ -72,6 +75,7 @@ public class DialogueAction {
 	}
 
 	public void setValue(String value) {
+		checkNotFrozen();
 		this.value = value;
 	}
 
@@ -80,6 +84,24 @@ public class DialogueAction {
 	}
 
 	public void setParameters(Map<String,String> parameters) {
+		checkNotFrozen();
 		this.parameters = parameters;
 	}
+
+	/**
+	 * Makes this action immutable. After this method has been called, any method that changes the
+	 * action throws an {@link IllegalStateException}, and the parameters are returned as an
+	 * unmodifiable map.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		parameters = Collections.unmodifiableMap(parameters);
+		frozen = true;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Dialogue action is frozen");
+	}
 }
@@ -30,6 +30,7 @@ package com.dialoguebranch.model.protocol;
 import com.dialoguebranch.model.Node;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -48,12 +49,14 @@ public class DialogueMessage {
 	private String speaker;
 	private DialogueStatement statement;
 	private List<ReplyMessage> replies = new ArrayList<>();
+	private boolean frozen = false;
 
 	public String getDialogue() {
 		return dialogue;
 	}
 
 	public void setDialogue(String dialogue) {
+		checkNotFrozen();
 		this.dialogue = dialogue;
 	}
 
@@ -62,6 +65,7 @@ public class DialogueMessage {
 	}
 
 	public void setNode(String node) {
+		checkNotFrozen();
 		this.node = node;
 	}
 
@@ -70,6 +74,7 @@ public class DialogueMessage {
 	}
 
 	public void setLoggedDialogueId(String loggedDialogueId) {
+		checkNotFrozen();
 		this.loggedDialogueId = loggedDialogueId;
 	}
 
@@ -78,6 +83,7 @@ public class DialogueMessage {
 	}
 
 	public void setLoggedInteractionIndex(int loggedInteractionIndex) {
+		checkNotFrozen();
 		this.loggedInteractionIndex = loggedInteractionIndex;
 	}
 
@@ -86,6 +92,7 @@ public class DialogueMessage {
 	}
 
 	public void setSpeaker(String speaker) {
+		checkNotFrozen();
 		this.speaker = speaker;
 	}
 
@@ -94,6 +101,7 @@ public class DialogueMessage {
 	}
 
 	public void setStatement(DialogueStatement statement) {
+		checkNotFrozen();
 		this.statement = statement;
 	}
 
@@ -102,10 +110,34 @@ public class DialogueMessage {
 	}
 
 	public void setReplies(List<ReplyMessage> replies) {
+		checkNotFrozen();
 		this.replies = replies;
 	}
 	
 	public void addReply(ReplyMessage reply) {
+		checkNotFrozen();
 		replies.add(reply);
 	}
+
+	/**
+	 * Makes this message immutable, including its statement and replies. After this method has
+	 * been called, any method that changes the message throws an {@link IllegalStateException},
+	 * and the replies are returned as an unmodifiable list.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		if (statement != null)
+			statement.freeze();
+		for (ReplyMessage reply : replies) {
+			reply.freeze();
+		}
+		replies = Collections.unmodifiableList(replies);
+		frozen = true;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Dialogue message is frozen");
+	}
 }
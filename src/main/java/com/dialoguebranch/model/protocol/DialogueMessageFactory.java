@@ -36,12 +36,19 @@ import com.dialoguebranch.model.command.ActionCommand;
 import com.dialoguebranch.model.command.InputCommand;
 import com.dialoguebranch.model.nodepointer.InternalNodePointer;
 
+import java.util.ArrayList;
+
 public class DialogueMessageFactory {
 	
 	/**
 	 * Generates a DialogueMessage based on the given executed node. Since the
 	 * node has already been executed, it should not contain variables or "if"
 	 * and "set" commands.
+	 *
+	 * <p>If the node is frozen and static (see {@link NodeBody#isStatic()}), such as the result
+	 * of {@link Node#getPrerenderedNode()}, the statement and reply messages are taken from
+	 * {@link Node#getStaticMessage()}. They are frozen and shared between all messages for that
+	 * node.</p>
 	 * 
 	 * @param executedNode the executed node
 	 * @return the DialogueMessage
@@ -60,12 +67,39 @@ public class DialogueMessageFactory {
 					executedNode.interactionIndex());
 		}
 		dialogueMessage.setSpeaker(node.getHeader().getSpeaker());
+		DialogueMessage staticMessage = node.getStaticMessage();
+		if (staticMessage != null) {
+			dialogueMessage.setStatement(staticMessage.getStatement());
+			dialogueMessage.setReplies(new ArrayList<>(staticMessage.getReplies()));
+			return dialogueMessage;
+		}
 		dialogueMessage.setStatement(generateDialogueStatement(body));
 		for (Reply reply : body.getReplies()) {
 			dialogueMessage.addReply(generateDialogueReply(reply));
 		}
 		return dialogueMessage;
 	}
+
+	/**
+	 * Generates a frozen DialogueMessage for a static node (see {@link NodeBody#isStatic()}).
+	 * The message contains the node title, speaker, statement and replies, but no dialogue or
+	 * logging information. This is called by {@link Node#getStaticMessage()}, which keeps the
+	 * result with the node.
+	 *
+	 * @param node the static node
+	 * @return the frozen DialogueMessage
+	 */
+	public static DialogueMessage generateStaticMessage(Node node) {
+		DialogueMessage message = new DialogueMessage();
+		message.setNode(node.getTitle());
+		message.setSpeaker(node.getHeader().getSpeaker());
+		message.setStatement(generateDialogueStatement(node.getBody()));
+		for (Reply reply : node.getBody().getReplies()) {
+			message.addReply(generateDialogueReply(reply));
+		}
+		message.freeze();
+		return message;
+	}
 	
 	private static DialogueStatement generateDialogueStatement(
 			NodeBody body) {
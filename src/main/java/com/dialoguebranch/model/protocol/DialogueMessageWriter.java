@@ -0,0 +1,224 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.model.protocol;
+
+import com.dialoguebranch.execution.ExecuteNodeResult;
+import com.dialoguebranch.model.Node;
+import com.dialoguebranch.model.NodeBody;
+import com.dialoguebranch.model.Reply;
+import com.dialoguebranch.model.VariableString;
+import com.dialoguebranch.model.command.ActionCommand;
+import com.dialoguebranch.model.command.Command;
+import com.dialoguebranch.model.command.InputCommand;
+import com.dialoguebranch.model.nodepointer.InternalNodePointer;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * This class writes an executed node directly as JSON to a {@link JsonGenerator} or {@link
+ * OutputStream}. The result is the same as serializing the {@link DialogueMessage} from {@link
+ * DialogueMessageFactory#generateDialogueMessage(ExecuteNodeResult)
+ * DialogueMessageFactory.generateDialogueMessage()} with a default Jackson {@link
+ * com.fasterxml.jackson.databind.ObjectMapper ObjectMapper}, but the processed {@link NodeBody}
+ * is written while it is traversed, without creating a {@link DialogueMessage}, {@link
+ * DialogueStatement}, {@link ReplyMessage}s or {@link DialogueAction}s in between.
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class DialogueMessageWriter {
+	private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+			.disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+			.build();
+
+	/**
+	 * Writes the specified executed node as a UTF-8 encoded JSON {@link DialogueMessage} to the
+	 * specified output stream. The stream is flushed but not closed.
+	 *
+	 * @param executedNode the executed node
+	 * @param output the output stream
+	 * @throws IOException if a writing error occurs
+	 */
+	public static void write(ExecuteNodeResult executedNode, OutputStream output)
+			throws IOException {
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(output,
+				JsonEncoding.UTF8)) {
+			write(executedNode, generator);
+		}
+	}
+
+	/**
+	 * Writes the specified executed node as a JSON {@link DialogueMessage} to the specified
+	 * generator. Since the node has already been executed, it should not contain variables or
+	 * "if" and "set" commands.
+	 *
+	 * @param executedNode the executed node
+	 * @param generator the JSON generator
+	 * @throws IOException if a writing error occurs
+	 */
+	public static void write(ExecuteNodeResult executedNode, JsonGenerator generator)
+			throws IOException {
+		Node node = executedNode.node();
+		NodeBody body = node.getBody();
+		generator.writeStartObject();
+		generator.writeStringField("dialogue", executedNode.dialogue().getDialogueName());
+		generator.writeStringField("node", node.getTitle());
+		if (executedNode.loggedDialogue() != null) {
+			generator.writeStringField("loggedDialogueId",
+					executedNode.loggedDialogue().getId());
+			generator.writeNumberField("loggedInteractionIndex",
+					executedNode.interactionIndex());
+		} else {
+			generator.writeNullField("loggedDialogueId");
+			generator.writeNumberField("loggedInteractionIndex", 0);
+		}
+		generator.writeStringField("speaker", node.getHeader().getSpeaker());
+		generator.writeFieldName("statement");
+		writeStatement(body, generator);
+		generator.writeArrayFieldStart("replies");
+		for (Reply reply : body.getReplies()) {
+			writeReply(reply, generator);
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	private static void writeStatement(NodeBody body, JsonGenerator generator)
+			throws IOException {
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("segments");
+		for (NodeBody.Segment segment : body.getSegments()) {
+			if (segment instanceof NodeBody.TextSegment textSegment) {
+				generator.writeStartObject();
+				generator.writeStringField("segmentType",
+						DialogueStatement.SegmentType.TEXT.name());
+				generator.writeStringField("text", textSegment.getText().evaluate(null));
+				generator.writeEndObject();
+			} else {
+				Command cmd = ((NodeBody.CommandSegment)segment).getCommand();
+				if (cmd instanceof ActionCommand actionCmd) {
+					generator.writeStartObject();
+					generator.writeStringField("segmentType",
+							DialogueStatement.SegmentType.ACTION.name());
+					generator.writeFieldName("action");
+					writeAction(actionCmd, generator);
+					generator.writeEndObject();
+				} else if (cmd instanceof InputCommand inputCmd) {
+					writeInput(inputCmd, generator);
+				}
+			}
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes an input segment in the same way as {@link
+	 * DialogueStatement.InputSegmentSerializer}, with the parameters as properties of the
+	 * segment.
+	 */
+	private static void writeInput(InputCommand inputCmd, JsonGenerator generator)
+			throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("segmentType", DialogueStatement.SegmentType.INPUT.name());
+		generator.writeStringField("inputType", inputCmd.getType());
+		if (inputCmd.getDescription() != null)
+			generator.writeStringField("description", inputCmd.getDescription());
+		for (Map.Entry<String,?> param : inputCmd.getParameters().entrySet()) {
+			generator.writeFieldName(param.getKey());
+			writeValue(param.getValue(), generator);
+		}
+		generator.writeEndObject();
+	}
+
+	private static void writeAction(ActionCommand actionCmd, JsonGenerator generator)
+			throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("type", actionCmd.getType());
+		generator.writeStringField("value", actionCmd.getValue().evaluate(null));
+		generator.writeObjectFieldStart("parameters");
+		for (Map.Entry<String,VariableString> param : actionCmd.getParameters().entrySet()) {
+			generator.writeStringField(param.getKey(), param.getValue().evaluate(null));
+		}
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+
+	private static void writeReply(Reply reply, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeNumberField("replyId", reply.getReplyId());
+		generator.writeFieldName("statement");
+		if (reply.getStatement() != null)
+			writeStatement(reply.getStatement(), generator);
+		else
+			generator.writeNull();
+		generator.writeArrayFieldStart("actions");
+		for (Command cmd : reply.getCommands()) {
+			if (cmd instanceof ActionCommand actionCmd)
+				writeAction(actionCmd, generator);
+		}
+		generator.writeEndArray();
+		boolean endsDialogue = reply.getNodePointer() instanceof InternalNodePointer pointer &&
+				pointer.getTargetNodeId().equalsIgnoreCase("end");
+		generator.writeBooleanField("endsDialogue", endsDialogue);
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes a parameter value of an input command. Maps and collections are written
+	 * recursively, so they do not need an {@link com.fasterxml.jackson.core.ObjectCodec
+	 * ObjectCodec}. Other values are written with {@link JsonGenerator#writeObject(Object)}.
+	 */
+	private static void writeValue(Object value, JsonGenerator generator) throws IOException {
+		if (value == null) {
+			generator.writeNull();
+		} else if (value instanceof Map<?,?> map) {
+			generator.writeStartObject();
+			for (Map.Entry<?,?> entry : map.entrySet()) {
+				generator.writeFieldName(String.valueOf(entry.getKey()));
+				writeValue(entry.getValue(), generator);
+			}
+			generator.writeEndObject();
+		} else if (value instanceof Collection<?> collection) {
+			generator.writeStartArray();
+			for (Object item : collection) {
+				writeValue(item, generator);
+			}
+			generator.writeEndArray();
+		} else {
+			generator.writeObject(value);
+		}
+	}
+}
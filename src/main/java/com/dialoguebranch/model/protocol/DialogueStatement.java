@@ -36,13 +36,13 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import nl.rrd.utils.exception.ParseException;
-import nl.rrd.utils.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.dialoguebranch.model.NodeBody;
 import com.dialoguebranch.model.command.ActionCommand;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,23 +67,35 @@ import java.util.Map;
  * @author Harm op den Akker
  */
 public class DialogueStatement {
+	// shared by the deserializers to convert a segment from its JSON tree; readers are immutable
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final ObjectReader TEXT_SEGMENT_READER = MAPPER.readerFor(TextSegment.class);
+	private static final ObjectReader ACTION_SEGMENT_READER = MAPPER.readerFor(
+			ActionSegment.class);
+	private static final ObjectReader PARAMETERS_READER = MAPPER.readerFor(
+			new TypeReference<Map<String,Object>>() {});
+
 	private List<Segment> segments = new ArrayList<>();
+	private boolean frozen = false;
 	
 	public List<Segment> getSegments() {
 		return segments;
 	}
 
 	public void setSegments(List<Segment> segments) {
+		checkNotFrozen();
 		this.segments = segments;
 	}
 	
 	public void addTextSegment(String text) {
+		checkNotFrozen();
 		TextSegment segment = new TextSegment();
 		segment.setText(text);
 		segments.add(segment);
 	}
 	
 	public void addInputSegment(InputCommand inputCommand) {
+		checkNotFrozen();
 		InputSegment segment = new InputSegment();
 		segment.setInputType(inputCommand.getType());
 		segment.setDescription(inputCommand.getDescription());
@@ -92,11 +104,32 @@ public class DialogueStatement {
 	}
 	
 	public void addActionSegment(ActionCommand actionCommand) {
+		checkNotFrozen();
 		ActionSegment segment = new ActionSegment();
 		segment.setAction(new DialogueAction(actionCommand));
 		segments.add(segment);
 	}
 
+	/**
+	 * Makes this statement immutable, including its segments. After this method has been called,
+	 * any method that changes the statement or a segment throws an {@link
+	 * IllegalStateException}, and the segments are returned as an unmodifiable list.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		for (Segment segment : segments) {
+			segment.freeze();
+		}
+		segments = Collections.unmodifiableList(segments);
+		frozen = true;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Dialogue statement is frozen");
+	}
+
 	public enum SegmentType {
 		TEXT,
 		INPUT,
@@ -106,6 +139,7 @@ public class DialogueStatement {
 	@JsonDeserialize(using=SegmentDeserializer.class)
 	public static abstract class Segment {
 		private final SegmentType segmentType;
+		private boolean frozen = false;
 		
 		protected Segment(SegmentType segmentType) {
 			this.segmentType = segmentType;
@@ -114,6 +148,23 @@ public class DialogueStatement {
 		public SegmentType getSegmentType() {
 			return segmentType;
 		}
+
+		/**
+		 * Makes this segment immutable. After this method has been called, any method that
+		 * changes the segment throws an {@link IllegalStateException}.
+		 */
+		public void freeze() {
+			frozen = true;
+		}
+
+		protected boolean isFrozen() {
+			return frozen;
+		}
+
+		protected void checkNotFrozen() {
+			if (frozen)
+				throw new IllegalStateException("Segment is frozen");
+		}
 	}
 	
 	@JsonDeserialize(using=JsonDeserializer.None.class)
@@ -129,6 +180,7 @@ public class DialogueStatement {
 		}
 
 		public void setText(String text) {
+			checkNotFrozen();
 			this.text = text;
 		}
 	}
@@ -161,6 +213,7 @@ public class DialogueStatement {
 		 * @param inputType the input type
 		 */
 		public void setInputType(String inputType) {
+			checkNotFrozen();
 			this.inputType = inputType;
 		}
 
@@ -183,6 +236,7 @@ public class DialogueStatement {
 		 * @param description the description or null
 		 */
 		public void setDescription(String description) {
+			checkNotFrozen();
 			this.description = description;
 		}
 
@@ -205,8 +259,17 @@ public class DialogueStatement {
 		 * @param parameters the parameters
 		 */
 		public void setParameters(Map<String, ?> parameters) {
+			checkNotFrozen();
 			this.parameters = parameters;
 		}
+
+		@Override
+		public void freeze() {
+			if (isFrozen())
+				return;
+			parameters = Collections.unmodifiableMap(parameters);
+			super.freeze();
+		}
 	}
 	
 	@JsonDeserialize(using=JsonDeserializer.None.class)
@@ -222,26 +285,41 @@ public class DialogueStatement {
 		}
 
 		public void setAction(DialogueAction action) {
+			checkNotFrozen();
 			this.action = action;
 		}
+
+		@Override
+		public void freeze() {
+			if (isFrozen())
+				return;
+			if (action != null)
+				action.freeze();
+			super.freeze();
+		}
 	}
 	
+	/**
+	 * Deserializes a {@link Segment} of any type. The segment is read as a JSON tree in one pass,
+	 * because the property "segmentType" does not have to come first. The tree is then converted
+	 * with shared readers, so no {@link ObjectMapper} is created per segment.
+	 */
 	public static class SegmentDeserializer extends JsonDeserializer<Segment> {
 		@Override
 		public Segment deserialize(JsonParser p, DeserializationContext ctxt)
 				throws IOException, JsonProcessingException {
-			Map<?,?> map = p.readValueAs(Map.class);
-			if (!map.containsKey("segmentType")) {
+			ObjectNode tree = readObjectTree(p, ctxt);
+			if (!tree.has("segmentType")) {
 				throw new JsonParseException(p,
 						"Property \"segmentType\" not found");
 			}
-			Object typeObj = map.remove("segmentType");
-			if (!(typeObj instanceof String)) {
+			JsonNode typeNode = tree.remove("segmentType");
+			if (!typeNode.isTextual()) {
 				throw new JsonParseException(p,
 						"Invalid value of property \"segmentType\": " +
-						typeObj);
+						typeNode);
 			}
-			String typeStr = (String)typeObj;
+			String typeStr = typeNode.textValue();
 			SegmentType type;
 			try {
 				type = SegmentType.valueOf(typeStr);
@@ -250,14 +328,13 @@ public class DialogueStatement {
 						"Invalid value of property \"segmentType\": " +
 						typeStr);
 			}
-			ObjectMapper mapper = new ObjectMapper();
 			switch (type) {
 			case TEXT:
-				return mapper.convertValue(map, TextSegment.class);
+				return TEXT_SEGMENT_READER.readValue(tree);
 			case INPUT:
-				return mapper.convertValue(map, InputSegment.class);
+				return InputSegmentDeserializer.fromTree(p, tree);
 			case ACTION:
-				return mapper.convertValue(map, ActionSegment.class);
+				return ACTION_SEGMENT_READER.readValue(tree);
 			default:
 				throw new JsonParseException(p, "Unsupported segment type: " +
 						type);
@@ -265,6 +342,16 @@ public class DialogueStatement {
 		}
 	}
 
+	private static ObjectNode readObjectTree(JsonParser p, DeserializationContext ctxt)
+			throws IOException {
+		JsonNode tree = ctxt.readTree(p);
+		if (!tree.isObject()) {
+			throw new JsonParseException(p, "Expected JSON object, found: " +
+					tree.getNodeType());
+		}
+		return (ObjectNode)tree;
+	}
+
 	public static class InputSegmentSerializer extends
 			JsonSerializer<InputSegment> {
 		@Override
@@ -288,38 +375,36 @@ public class DialogueStatement {
 		public InputSegment deserialize(JsonParser p,
 				DeserializationContext ctxt) throws IOException,
 				JsonProcessingException {
-			Map<?,?> rawMap = p.readValueAs(Map.class);
-			Map<String, ?> map;
-			try {
-				map = JsonMapper.convert(rawMap,
-						new TypeReference<Map<String, ?>>() {});
-			} catch (ParseException ex) {
-				throw new JsonParseException(p, "Object keys are not strings");
-			}
-			map.remove("segmentType");
+			ObjectNode tree = readObjectTree(p, ctxt);
+			tree.remove("segmentType");
+			return fromTree(p, tree);
+		}
+
+		private static InputSegment fromTree(JsonParser p, ObjectNode tree)
+				throws IOException {
 			InputSegment segment = new InputSegment();
-			if (!map.containsKey("inputType")) {
+			if (!tree.has("inputType")) {
 				throw new JsonParseException(p,
 						"Property \"inputType\" not found");
 			}
-			Object typeObj = map.remove("inputType");
-			if (!(typeObj instanceof String)) {
+			JsonNode typeNode = tree.remove("inputType");
+			if (!typeNode.isTextual()) {
 				throw new JsonParseException(p,
 						"Invalid value of property \"inputType\": " +
-						typeObj);
+						typeNode);
 			}
-			String typeStr = (String)typeObj;
-			segment.setInputType(typeStr);
-			Object descrObj = map.remove("description");
-			if (descrObj != null) {
-				if (!(descrObj instanceof String)) {
+			segment.setInputType(typeNode.textValue());
+			JsonNode descrNode = tree.remove("description");
+			if (descrNode != null && !descrNode.isNull()) {
+				if (!descrNode.isTextual()) {
 					throw new JsonParseException(p,
 							"Invalid value of property \"description\": " +
-							descrObj);
+							descrNode);
 				}
-				segment.setDescription((String)descrObj);
+				segment.setDescription(descrNode.textValue());
 			}
-			segment.setParameters(map);
+			Map<String,Object> parameters = PARAMETERS_READER.readValue(tree);
+			segment.setParameters(parameters);
 			return segment;
 		}
 	}
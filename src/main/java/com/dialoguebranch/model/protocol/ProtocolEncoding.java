@@ -0,0 +1,158 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.dialoguebranch.model.protocol;
+
+import com.dialoguebranch.execution.ExecuteNodeResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The encodings in which the messages of the web service protocol can be exchanged with the
+ * client. Besides JSON, this supports the binary CBOR format, which is smaller and faster to
+ * read and write. Both encodings have the same data model, so a {@link DialogueMessage} or
+ * {@link ReplyMessage} is encoded with the same properties in each of them.
+ *
+ * <p>Each encoding has a shared {@link ObjectMapper} with readers and writers for the protocol
+ * messages, so they are not created per message. All methods are thread-safe.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public enum ProtocolEncoding {
+	JSON("application/json", new ObjectMapper()),
+	CBOR("application/cbor", new CBORMapper());
+
+	private final String contentType;
+	private final ObjectMapper mapper;
+	private final ObjectWriter dialogueMessageWriter;
+	private final ObjectReader dialogueMessageReader;
+	private final ObjectWriter replyMessageWriter;
+	private final ObjectReader replyMessageReader;
+
+	ProtocolEncoding(String contentType, ObjectMapper mapper) {
+		this.contentType = contentType;
+		this.mapper = mapper;
+		dialogueMessageWriter = mapper.writerFor(DialogueMessage.class);
+		// input streams are not closed, which makes no difference for byte arrays
+		dialogueMessageReader = mapper.readerFor(DialogueMessage.class)
+				.without(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		replyMessageWriter = mapper.writerFor(ReplyMessage.class);
+		replyMessageReader = mapper.readerFor(ReplyMessage.class);
+	}
+
+	/**
+	 * Returns the MIME content type of this encoding, for example to use in the Content-Type
+	 * header of an HTTP response.
+	 *
+	 * @return the content type
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Encodes the specified dialogue message.
+	 *
+	 * @param message the dialogue message
+	 * @return the encoded message
+	 * @throws IOException if the message cannot be encoded
+	 */
+	public byte[] writeDialogueMessage(DialogueMessage message) throws IOException {
+		return dialogueMessageWriter.writeValueAsBytes(message);
+	}
+
+	/**
+	 * Decodes a dialogue message.
+	 *
+	 * @param data the encoded message
+	 * @return the dialogue message
+	 * @throws IOException if the data is not a valid dialogue message in this encoding
+	 */
+	public DialogueMessage readDialogueMessage(byte[] data) throws IOException {
+		return dialogueMessageReader.readValue(data);
+	}
+
+	/**
+	 * Decodes a dialogue message from the specified input stream. The stream is not closed.
+	 *
+	 * @param input the input stream
+	 * @return the dialogue message
+	 * @throws IOException if a reading error occurs or the input is not a valid dialogue
+	 * message in this encoding
+	 */
+	public DialogueMessage readDialogueMessage(InputStream input) throws IOException {
+		return dialogueMessageReader.readValue(input);
+	}
+
+	/**
+	 * Encodes the specified reply message.
+	 *
+	 * @param message the reply message
+	 * @return the encoded message
+	 * @throws IOException if the message cannot be encoded
+	 */
+	public byte[] writeReplyMessage(ReplyMessage message) throws IOException {
+		return replyMessageWriter.writeValueAsBytes(message);
+	}
+
+	/**
+	 * Decodes a reply message.
+	 *
+	 * @param data the encoded message
+	 * @return the reply message
+	 * @throws IOException if the data is not a valid reply message in this encoding
+	 */
+	public ReplyMessage readReplyMessage(byte[] data) throws IOException {
+		return replyMessageReader.readValue(data);
+	}
+
+	/**
+	 * Writes the specified executed node as a {@link DialogueMessage} in this encoding to the
+	 * specified output stream, without creating the intermediate protocol objects (see {@link
+	 * DialogueMessageWriter}). The stream is flushed but not closed.
+	 *
+	 * @param executedNode the executed node
+	 * @param output the output stream
+	 * @throws IOException if a writing error occurs
+	 */
+	public void writeExecutedNode(ExecuteNodeResult executedNode, OutputStream output)
+			throws IOException {
+		try (JsonGenerator generator = mapper.createGenerator(output)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			DialogueMessageWriter.write(executedNode, generator);
+		}
+	}
+}
@@ -31,6 +31,7 @@ import com.dialoguebranch.model.NodeBody;
 import com.dialoguebranch.model.Reply;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -61,6 +62,7 @@ public class ReplyMessage {
 	private DialogueStatement statement = null;
 	private List<DialogueAction> actions = new ArrayList<>();
 	private boolean endsDialogue = false;
+	private boolean frozen = false;
 
 	/**
 	 * Returns the reply ID.
@@ -77,6 +79,7 @@ public class ReplyMessage {
 	 * @param replyId the reply ID
 	 */
 	public void setReplyId(int replyId) {
+		checkNotFrozen();
 		this.replyId = replyId;
 	}
 
@@ -97,6 +100,7 @@ public class ReplyMessage {
 	 * @param statement the reply statement or null (default)
 	 */
 	public void setStatement(DialogueStatement statement) {
+		checkNotFrozen();
 		this.statement = statement;
 	}
 
@@ -116,6 +120,7 @@ public class ReplyMessage {
 	 * chosen
 	 */
 	public void setActions(List<DialogueAction> actions) {
+		checkNotFrozen();
 		this.actions = actions;
 	}
 	
@@ -126,6 +131,7 @@ public class ReplyMessage {
 	 * chosen
 	 */
 	public void addAction(DialogueAction action) {
+		checkNotFrozen();
 		actions.add(action);
 	}
 
@@ -145,6 +151,29 @@ public class ReplyMessage {
 	 * (default)
 	 */
 	public void setEndsDialogue(boolean endsDialogue) {
+		checkNotFrozen();
 		this.endsDialogue = endsDialogue;
 	}
+
+	/**
+	 * Makes this reply immutable, including its statement and actions. After this method has been
+	 * called, any method that changes the reply throws an {@link IllegalStateException}, and the
+	 * actions are returned as an unmodifiable list.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		if (statement != null)
+			statement.freeze();
+		for (DialogueAction action : actions) {
+			action.freeze();
+		}
+		actions = Collections.unmodifiableList(actions);
+		frozen = true;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException("Reply message is frozen");
+	}
 }
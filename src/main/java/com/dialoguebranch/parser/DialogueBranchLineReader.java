@@ -0,0 +1,232 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.parser;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@link DialogueBranchLineReader} reads lines from a DialogueBranch script for the {@link
+ * DialogueBranchParser}. On the first read, it reads the complete input into a single character
+ * buffer. Lines are then found by scanning that buffer, and each line is returned as one slice of
+ * the buffer, rather than being built character by character.
+ *
+ * <p>A line ends with \n, \r or \r\n. The reader keeps track of the line and column number of
+ * the current position in the same way as a {@link nl.rrd.utils.io.LineColumnNumberReader}:
+ * each of these line endings counts as one line break, and after a line break the column number
+ * is 1.</p>
+ *
+ * @author Dennis Hofs (Roessingh Research and Development)
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class DialogueBranchLineReader implements Closeable {
+
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private Reader reader = null;
+	private FileInputStream input = null;
+
+	private boolean closed = false;
+
+	private char[] buffer = null;
+	private int end = 0;
+	private int position = 0;
+	private int lineNum = 1;
+	private int colNum = 1;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a {@link DialogueBranchLineReader} that reads from the specified
+	 * reader. The reader is read completely on the first read.
+	 *
+	 * @param reader the reader
+	 */
+	public DialogueBranchLineReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Creates an instance of a {@link DialogueBranchLineReader} that reads from the specified
+	 * UTF-8 file. On the first read, the file is read with one read from its {@link FileChannel}
+	 * and decoded at once. Malformed input is replaced, as it would be by an {@link
+	 * java.io.InputStreamReader}.
+	 *
+	 * @param input the file input stream
+	 */
+	public DialogueBranchLineReader(FileInputStream input) {
+		this.input = input;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the line number of the current position. The first line is 1.
+	 *
+	 * @return the line number of the current position
+	 */
+	public int getLineNum() {
+		return lineNum;
+	}
+
+	/**
+	 * Returns the column number of the current position. The first column is 1.
+	 *
+	 * @return the column number of the current position
+	 */
+	public int getColNum() {
+		return colNum;
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Reads the next line without the line ending. If the end of the input has been reached, this
+	 * method returns null. An empty last line after the last line ending is not returned.
+	 *
+	 * @return the line or null
+	 * @throws IOException if a reading error occurs
+	 */
+	public String readLine() throws IOException {
+		return readLine(false);
+	}
+
+	/**
+	 * Reads the next line and returns it with a newline (\n) at the end, regardless of the actual
+	 * line ending in the input. This is the format that is expected by {@link
+	 * BodyTokenizer#readBodyTokens(String, int) BodyTokenizer.readBodyTokens()}. If the end of the
+	 * input has been reached, this method returns null.
+	 *
+	 * @return the line ending with \n, or null
+	 * @throws IOException if a reading error occurs
+	 */
+	public String readLineWithNewline() throws IOException {
+		return readLine(true);
+	}
+
+	private String readLine(boolean withNewline) throws IOException {
+		if (buffer == null)
+			readInput();
+		if (position == end)
+			return null;
+		char[] buf = buffer;
+		int lineStart = position;
+		int i = lineStart;
+		while (i < end && buf[i] != '\n' && buf[i] != '\r') {
+			i++;
+		}
+		int lineEnd = i;
+		if (i == end) {
+			position = end;
+			colNum += lineEnd - lineStart;
+		} else {
+			if (buf[i] == '\r' && i + 1 < end && buf[i + 1] == '\n')
+				i++;
+			position = i + 1;
+			lineNum++;
+			colNum = 1;
+			// only a plain \n line ending can be returned as it is
+			if (withNewline && buf[lineEnd] == '\n')
+				return new String(buf, lineStart, lineEnd + 1 - lineStart);
+		}
+		if (!withNewline)
+			return new String(buf, lineStart, lineEnd - lineStart);
+		char[] line = Arrays.copyOfRange(buf, lineStart, lineEnd + 1);
+		line[line.length - 1] = '\n';
+		return new String(line);
+	}
+
+	/**
+	 * Reads the complete input into the character buffer and closes the source.
+	 *
+	 * @throws IOException if a reading error occurs
+	 */
+	private void readInput() throws IOException {
+		if (closed)
+			throw new IOException("Reader closed");
+		CharBuffer chars;
+		if (input != null) {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8)
+				throw new IOException("File too large: " + size + " bytes");
+			ByteBuffer bytes = ByteBuffer.allocate((int)size);
+			while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+				// continue reading until the buffer is full or end of file
+			}
+			bytes.flip();
+			chars = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE)
+					.decode(bytes);
+		} else {
+			char[] buf = new char[READ_BUFFER_SIZE];
+			int len = 0;
+			int n;
+			while ((n = reader.read(buf, len, buf.length - len)) != -1) {
+				len += n;
+				if (len == buf.length)
+					buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			chars = CharBuffer.wrap(buf, 0, len);
+		}
+		close();
+		buffer = chars.array();
+		position = chars.arrayOffset() + chars.position();
+		end = chars.arrayOffset() + chars.limit();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (reader != null)
+				reader.close();
+			if (input != null)
+				input.close();
+		} finally {
+			closed = true;
+			reader = null;
+			input = null;
+		}
+	}
+}
@@ -32,7 +32,6 @@ import com.dialoguebranch.model.*;
 import com.dialoguebranch.model.nodepointer.InternalNodePointer;
 import nl.rrd.utils.exception.LineNumberParseException;
 import nl.rrd.utils.exception.ParseException;
-import nl.rrd.utils.io.LineColumnNumberReader;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -47,7 +46,7 @@ public class DialogueBranchParser implements AutoCloseable {
 			"\\." + NODE_NAME_REGEX;
 	
 	private String dialogueName;
-	private LineColumnNumberReader reader;
+	private DialogueBranchLineReader reader;
 	
 	private Dialogue dialogue = null;
 	private List<NodeState.NodePointerToken> nodePointerTokens = null;
@@ -65,7 +64,7 @@ public class DialogueBranchParser implements AutoCloseable {
 	}
 	
 	public DialogueBranchParser(String dialogueName, Reader reader) {
-		init(dialogueName, new LineColumnNumberReader(reader));
+		init(dialogueName, reader);
 	}
 	
 	private void init(File file) throws FileNotFoundException {
@@ -73,24 +72,23 @@ public class DialogueBranchParser implements AutoCloseable {
 		int extSep = name.lastIndexOf('.');
 		if (extSep != -1)
 			name = name.substring(0, extSep);
-		init(name, new FileInputStream(file));
+		this.dialogueName = name;
+		this.reader = new DialogueBranchLineReader(new FileInputStream(file));
 	}
 	
 	private void init(String dialogueName, InputStream input) {
-		init(dialogueName, new InputStreamReader(input,
-				StandardCharsets.UTF_8));
+		if (input instanceof FileInputStream fileInput) {
+			this.dialogueName = dialogueName;
+			this.reader = new DialogueBranchLineReader(fileInput);
+		} else {
+			init(dialogueName, new InputStreamReader(input,
+					StandardCharsets.UTF_8));
+		}
 	}
 	
 	private void init(String dialogueName, Reader reader) {
 		this.dialogueName = dialogueName;
-		if (reader instanceof LineColumnNumberReader) {
-			this.reader = (LineColumnNumberReader)reader;
-		} else if (reader instanceof BufferedReader) {
-			this.reader = new LineColumnNumberReader(reader);
-		} else {
-			this.reader = new LineColumnNumberReader(
-					new BufferedReader(reader));
-		}
+		this.reader = new DialogueBranchLineReader(reader);
 	}
 
 	@Override
@@ -148,6 +146,8 @@ public class DialogueBranchParser implements AutoCloseable {
 		}
 		if (!result.getParseErrors().isEmpty())
 			return result;
+		// the parsed dialogue is shared by all executions and translations
+		dialogue.freeze();
 		result.setDialogue(dialogue);
 		this.dialogue = null;
 		nodePointerTokens = null;
@@ -177,7 +177,7 @@ public class DialogueBranchParser implements AutoCloseable {
 			boolean inHeader = true;
 			Map<String,String> headerMap = new LinkedHashMap<>();
 			int lineNum = reader.getLineNum();
-			String line = readLine();
+			String line = reader.readLine();
 			while (line != null && inHeader) {
 				if (getContent(line).equals(Constants.DLB_NODE_SEPARATOR)) {
 					result.readNodeEnd = true;
@@ -188,7 +188,7 @@ public class DialogueBranchParser implements AutoCloseable {
 				} else {
 					parseHeaderLine(headerMap, line, lineNum, nodeState);
 					lineNum = reader.getLineNum();
-					line = readLine();
+					line = reader.readLine();
 				}
 			}
 			if (inHeader) {
@@ -204,17 +204,16 @@ public class DialogueBranchParser implements AutoCloseable {
 			boolean inBody = true;
 			BodyTokenizer tokenizer = new BodyTokenizer();
 			lineNum = reader.getLineNum();
-			line = readLine();
+			line = reader.readLineWithNewline();
 			List<BodyToken> bodyTokens = new ArrayList<>();
 			while (line != null && inBody) {
 				if (getContent(line).equals(Constants.DLB_NODE_SEPARATOR)) {
 					inBody = false;
 					result.readNodeEnd = true;
 				} else {
-					bodyTokens.addAll(tokenizer.readBodyTokens(line + "\n",
-							lineNum));
+					bodyTokens.addAll(tokenizer.readBodyTokens(line, lineNum));
 					lineNum = reader.getLineNum();
-					line = readLine();
+					line = reader.readLineWithNewline();
 				}
 			}
 			BodyParser bodyParser = new BodyParser(nodeState);
@@ -261,7 +260,7 @@ public class DialogueBranchParser implements AutoCloseable {
 	
 	private void moveToNextNode() throws IOException {
 		String line;
-		while ((line = readLine()) != null) {
+		while ((line = reader.readLine()) != null) {
 			if (getContent(line).equals(Constants.DLB_NODE_SEPARATOR))
 				return;
 		}
@@ -377,35 +376,6 @@ public class DialogueBranchParser implements AutoCloseable {
 		return result;
 	}
 	
-	private String readLine() throws IOException {
-		StringBuilder builder = new StringBuilder();
-		boolean foundCR = false;
-		while (true) {
-			if (foundCR) {
-				Object restoreState = reader.getRestoreState(1);
-				int c = reader.read();
-				if (c == -1 || c == '\n')
-					reader.clearRestoreState(restoreState);
-				else
-					reader.restoreState(restoreState);
-				return builder.toString();
-			}
-			int c = reader.read();
-			if (c == -1) {
-				if (builder.length() == 0)
-					return null;
-				else
-					return builder.toString();
-			} else if (c == '\n') {
-				return builder.toString();
-			} else if (c == '\r') {
-				foundCR = true;
-			} else {
-				builder.append((char)c);
-			}
-		}
-	}
-	
 	private static void showUsage() {
 		System.out.println("Usage:");
 		System.out.println("java " + DialogueBranchParser.class.getName() + " [options] <dialogue-branch-file>");
@@ -0,0 +1,542 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.parser;
+
+import com.dialoguebranch.i18n.ContextTranslation;
+import com.dialoguebranch.i18n.Translatable;
+import com.dialoguebranch.i18n.TranslationContext;
+import com.dialoguebranch.i18n.TranslationParserResult;
+import com.dialoguebranch.i18n.Translator;
+import com.dialoguebranch.model.BaseProject;
+import com.dialoguebranch.model.Dialogue;
+import com.dialoguebranch.model.FileDescriptor;
+import com.dialoguebranch.model.FileType;
+import com.dialoguebranch.model.TranslatedDialogueCache;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.i18n.I18nLanguageFinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A {@link LazyProject} is a {@link BaseProject} that only keeps an index of the files from a
+ * {@link FileLoader}. A dialogue or translation file is parsed the first time it is needed, for
+ * example when it is retrieved from one of the maps returned by {@link #getDialogues()}, {@link
+ * #getSourceDialogues()} and {@link #getTranslations()}, or by {@link
+ * #getTranslatedDialogue(FileDescriptor, TranslationContext) getTranslatedDialogue()}. Parsed
+ * source dialogues, translations and translated dialogues are kept in caches with a maximum size.
+ * When a cache is full, the least recently used entry is removed.
+ *
+ * <p>The key sets of the returned maps are taken from the index, so iterating over keys does not
+ * parse any files. Iterating over values or entries parses all files in the map.</p>
+ *
+ * <p>Because files are parsed on demand, parse errors are only found when a file is needed. In
+ * that case the errors are logged and the dialogue or translation is treated as not available
+ * (the map returns {@code null}). External node pointers are not validated either. Use {@link
+ * ProjectParser#parse()} to validate a complete project, for example when it is deployed.</p>
+ *
+ * <p>Unlike a {@link com.dialoguebranch.model.Project Project}, the dialogues and translations
+ * cannot be set. Changed files can be reloaded with {@link #reload()} or {@link
+ * #invalidate(Collection, Collection) invalidate()}.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class LazyProject extends BaseProject {
+
+	private static final Logger logger = LoggerFactory.getLogger(LazyProject.class);
+
+	/** The default maximum number of entries in each cache */
+	public static final int DEFAULT_MAX_CACHED_DIALOGUES = 64;
+
+	private final FileLoader fileLoader;
+	private final ProjectParser parser;
+	private final int maxCachedDialogues;
+
+	private volatile Index index = new Index(new LinkedHashSet<>(), new LinkedHashSet<>());
+	// incremented whenever files are reloaded or invalidated
+	private volatile long generation = 0;
+
+	private final LruCache<FileDescriptor,Dialogue> sourceDialogueCache;
+	private final LruCache<FileDescriptor,Map<Translatable,List<ContextTranslation>>>
+			translationCache;
+	private final LruCache<FileDescriptor,Dialogue> translatedDialogueCache;
+	private final TranslatedDialogueCache contextDialogueCache;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a {@link LazyProject} that loads files from the specified {@link
+	 * FileLoader}. The project is empty until {@link #reload()} is called. Use {@link
+	 * ProjectParser#parseLazy(int)} to create an indexed project at once.
+	 *
+	 * @param fileLoader the {@link FileLoader} implementation
+	 * @param maxCachedDialogues the maximum number of entries in each cache (at least 1)
+	 */
+	public LazyProject(FileLoader fileLoader, int maxCachedDialogues) {
+		if (maxCachedDialogues < 1) {
+			throw new IllegalArgumentException(
+					"Invalid maximum number of cached dialogues: " + maxCachedDialogues);
+		}
+		this.fileLoader = fileLoader;
+		this.parser = new ProjectParser(fileLoader);
+		this.maxCachedDialogues = maxCachedDialogues;
+		sourceDialogueCache = new LruCache<>(maxCachedDialogues);
+		translationCache = new LruCache<>(maxCachedDialogues);
+		translatedDialogueCache = new LruCache<>(maxCachedDialogues);
+		contextDialogueCache = new TranslatedDialogueCache(maxCachedDialogues);
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the {@link FileLoader} from which the files of this project are loaded.
+	 *
+	 * @return the {@link FileLoader} implementation
+	 */
+	public FileLoader getFileLoader() {
+		return fileLoader;
+	}
+
+	/**
+	 * Returns the maximum number of entries in each cache.
+	 *
+	 * @return the maximum number of entries in each cache
+	 */
+	public int getMaxCachedDialogues() {
+		return maxCachedDialogues;
+	}
+
+	/**
+	 * Returns a read-only map with all available dialogues in this project. This includes source
+	 * dialogues as well as translated dialogues with the default {@link TranslationContext}.
+	 * Dialogues are parsed and translated when they are retrieved from the map.
+	 *
+	 * @return the available dialogues (source and translations with default context)
+	 */
+	@Override
+	public Map<FileDescriptor, Dialogue> getDialogues() {
+		return new LazyMap<>(index -> {
+			Set<FileDescriptor> keys = new LinkedHashSet<>(index.scripts());
+			keys.addAll(index.translations());
+			return keys;
+		}, this::loadDialogue);
+	}
+
+	/**
+	 * Returns a read-only map with the source dialogues. This excludes any translations.
+	 * Dialogues are parsed when they are retrieved from the map.
+	 *
+	 * @return the source dialogues (no translations)
+	 */
+	@Override
+	public Map<FileDescriptor, Dialogue> getSourceDialogues() {
+		return new LazyMap<>(Index::scripts, this::loadSourceDialogue);
+	}
+
+	/**
+	 * Returns a read-only map with the translations of all phrases per dialogue. Translation files
+	 * are parsed when they are retrieved from the map.
+	 *
+	 * @return the translations
+	 */
+	@Override
+	public Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>>
+	getTranslations() {
+		return new LazyMap<>(Index::translations, this::loadTranslations);
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Returns a translated dialogue for the specified translation context. If the description
+	 * refers to a source dialogue, that dialogue is returned. Otherwise, the translation file and
+	 * the source dialogue are loaded and the dialogue is translated with the specified context.
+	 * Translated dialogues are cached per effective translation context (see {@link
+	 * TranslatedDialogueCache}), so the returned dialogue may be shared and should not be
+	 * modified.
+	 *
+	 * <p>If no source dialogue or translation is found, or if a file could not be parsed, this
+	 * method returns null.</p>
+	 *
+	 * @param dialogueDescription the dialogue description (name and language)
+	 * @param context the translation context
+	 * @return the translated dialogue or null
+	 */
+	@Override
+	public Dialogue getTranslatedDialogue(FileDescriptor dialogueDescription,
+			TranslationContext context) {
+		Dialogue dialogue = loadSourceDialogue(dialogueDescription);
+		if (dialogue != null)
+			return dialogue;
+		Map<Translatable,List<ContextTranslation>> translations =
+				loadTranslations(dialogueDescription);
+		if (translations == null)
+			return null;
+		dialogue = loadSourceDialogue(findSourceDescriptor(index,
+				dialogueDescription.getDialogueName()));
+		if (dialogue == null)
+			return null;
+		return contextDialogueCache.get(dialogueDescription, dialogue, translations, context);
+	}
+
+	/**
+	 * Lists the files from the {@link FileLoader} again and clears all caches.
+	 *
+	 * @throws IOException if the files cannot be listed
+	 */
+	public void reload() throws IOException {
+		Set<FileDescriptor> scripts = new LinkedHashSet<>();
+		Set<FileDescriptor> translations = new LinkedHashSet<>();
+		for (FileDescriptor fileDescription : fileLoader.listDialogueBranchFiles()) {
+			if (fileDescription.getFileType() == FileType.SCRIPT)
+				scripts.add(fileDescription);
+			else if (fileDescription.getFileType() == FileType.TRANSLATION)
+				translations.add(fileDescription);
+		}
+		synchronized (this) {
+			generation++;
+			index = new Index(scripts, translations);
+			sourceDialogueCache.clear();
+			translationCache.clear();
+			translatedDialogueCache.clear();
+			contextDialogueCache.clear();
+		}
+	}
+
+	/**
+	 * Updates the index for files that were added, modified or removed, and removes the cached
+	 * dialogues and translations that depend on these files. They will be loaded again when
+	 * they are needed.
+	 *
+	 * @param changedFiles the files that were added or modified
+	 * @param removedFiles the files that were removed
+	 */
+	public synchronized void invalidate(Collection<FileDescriptor> changedFiles,
+			Collection<FileDescriptor> removedFiles) {
+		Set<FileDescriptor> scripts = new LinkedHashSet<>(index.scripts());
+		Set<FileDescriptor> translations = new LinkedHashSet<>(index.translations());
+		Set<String> changedDialogueNames = new LinkedHashSet<>();
+		List<FileDescriptor> files = new ArrayList<>(changedFiles);
+		files.addAll(removedFiles);
+		for (FileDescriptor fileDescription : files) {
+			boolean removed = removedFiles.contains(fileDescription);
+			if (fileDescription.getFileType() == FileType.SCRIPT) {
+				if (removed)
+					scripts.remove(fileDescription);
+				else
+					scripts.add(fileDescription);
+				sourceDialogueCache.remove(fileDescription);
+				changedDialogueNames.add(fileDescription.getDialogueName());
+			} else if (fileDescription.getFileType() == FileType.TRANSLATION) {
+				if (removed)
+					translations.remove(fileDescription);
+				else
+					translations.add(fileDescription);
+				translationCache.remove(fileDescription);
+				translatedDialogueCache.remove(fileDescription);
+				contextDialogueCache.remove(fileDescription);
+			}
+		}
+		translatedDialogueCache.removeIf(fileDescription ->
+				changedDialogueNames.contains(fileDescription.getDialogueName()));
+		generation++;
+		index = new Index(scripts, translations);
+	}
+
+	/**
+	 * Returns the source dialogue or the translated dialogue with the default translation context
+	 * for the specified file.
+	 *
+	 * @param fileDescription the file description
+	 * @return the dialogue or null
+	 */
+	private Dialogue loadDialogue(FileDescriptor fileDescription) {
+		Dialogue dialogue = loadSourceDialogue(fileDescription);
+		if (dialogue != null)
+			return dialogue;
+		long generation = this.generation;
+		Index index = this.index;
+		if (!index.translations().contains(fileDescription))
+			return null;
+		dialogue = translatedDialogueCache.get(fileDescription);
+		if (dialogue != null)
+			return dialogue;
+		Map<Translatable,List<ContextTranslation>> translations =
+				loadTranslations(fileDescription);
+		if (translations == null)
+			return null;
+		Dialogue source = loadSourceDialogue(findSourceDescriptor(index,
+				fileDescription.getDialogueName()));
+		if (source == null) {
+			logger.error("No source dialogue found for translation: " + fileDescription);
+			return null;
+		}
+		Translator translator = new Translator(new TranslationContext(), translations);
+		return cache(translatedDialogueCache, fileDescription, translator.translateLazily(source),
+				generation);
+	}
+
+	private Dialogue loadSourceDialogue(FileDescriptor fileDescription) {
+		long generation = this.generation;
+		if (fileDescription == null || !index.scripts().contains(fileDescription))
+			return null;
+		Dialogue dialogue = sourceDialogueCache.get(fileDescription);
+		if (dialogue != null)
+			return dialogue;
+		ParserResult result;
+		try {
+			result = parser.parseDialogueFile(fileDescription);
+		} catch (IOException ex) {
+			logger.error("Failed to read dialogue file " + fileDescription + ": " +
+					ex.getMessage(), ex);
+			return null;
+		}
+		if (!result.getParseErrors().isEmpty()) {
+			logParseErrors(fileDescription, result.getParseErrors());
+			return null;
+		}
+		return cache(sourceDialogueCache, fileDescription, result.getDialogue(), generation);
+	}
+
+	private Map<Translatable,List<ContextTranslation>> loadTranslations(
+			FileDescriptor fileDescription) {
+		long generation = this.generation;
+		if (!index.translations().contains(fileDescription))
+			return null;
+		Map<Translatable,List<ContextTranslation>> translations =
+				translationCache.get(fileDescription);
+		if (translations != null)
+			return translations;
+		TranslationParserResult result;
+		try {
+			result = parser.parseTranslationFile(fileDescription);
+		} catch (IOException ex) {
+			logger.error("Failed to read translation file " + fileDescription + ": " +
+					ex.getMessage(), ex);
+			return null;
+		}
+		for (String warning : result.getWarnings()) {
+			logger.warn("Warning in translation file " + fileDescription + ": " + warning);
+		}
+		if (!result.getParseErrors().isEmpty()) {
+			logParseErrors(fileDescription, result.getParseErrors());
+			return null;
+		}
+		return cache(translationCache, fileDescription, result.getTranslations(), generation);
+	}
+
+	/**
+	 * Adds a loaded value to a cache, unless another thread loaded the same file in the meantime.
+	 * If files were reloaded or invalidated while the value was being loaded, the value is
+	 * returned but not cached, because it may be based on an old version of a file.
+	 *
+	 * @param cache the cache
+	 * @param fileDescription the file description
+	 * @param value the loaded value
+	 * @param generation the value of "generation" before the value was loaded
+	 * @return the cached value
+	 * @param <V> the type of value
+	 */
+	private synchronized <V> V cache(LruCache<FileDescriptor,V> cache,
+			FileDescriptor fileDescription, V value, long generation) {
+		if (generation != this.generation)
+			return value;
+		V current = cache.putIfAbsent(fileDescription, value);
+		return current != null ? current : value;
+	}
+
+	private void logParseErrors(FileDescriptor fileDescription, List<ParseException> errors) {
+		StringBuilder message = new StringBuilder("Failed to parse " + fileDescription + ":");
+		for (ParseException error : errors) {
+			message.append("\n  - ").append(error.getMessage());
+		}
+		logger.error(message.toString());
+	}
+
+	private FileDescriptor findSourceDescriptor(Index index, String dialogueName) {
+		List<FileDescriptor> matches = new ArrayList<>();
+		for (FileDescriptor fileDescription : index.scripts()) {
+			if (fileDescription.getDialogueName().equals(dialogueName))
+				matches.add(fileDescription);
+		}
+		if (matches.isEmpty())
+			return null;
+		if (matches.size() == 1)
+			return matches.get(0);
+		Map<String, FileDescriptor> lngMap = new HashMap<>();
+		for (FileDescriptor match : matches) {
+			lngMap.put(match.getLanguage(), match);
+		}
+		I18nLanguageFinder finder = new I18nLanguageFinder(new ArrayList<>(lngMap.keySet()));
+		finder.setUserLocale(Locale.ENGLISH);
+		String language = finder.find();
+		if (language == null)
+			return matches.get(0);
+		else
+			return lngMap.get(language);
+	}
+
+	/**
+	 * The index of files in a {@link LazyProject}. The sets are not modified after the index has
+	 * been created.
+	 *
+	 * @param scripts the script files
+	 * @param translations the translation files
+	 */
+	private record Index(Set<FileDescriptor> scripts, Set<FileDescriptor> translations) { }
+
+	/**
+	 * A cache with a maximum size, that removes the least recently used entry when it is full.
+	 * All methods are synchronized.
+	 *
+	 * @param <K> the type of key
+	 * @param <V> the type of value
+	 */
+	private static class LruCache<K,V> {
+		private final Map<K,V> map;
+
+		private LruCache(int maxSize) {
+			map = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		private synchronized V get(K key) {
+			return map.get(key);
+		}
+
+		private synchronized V putIfAbsent(K key, V value) {
+			return map.putIfAbsent(key, value);
+		}
+
+		private synchronized void remove(K key) {
+			map.remove(key);
+		}
+
+		private synchronized void removeIf(Predicate<K> filter) {
+			map.keySet().removeIf(filter);
+		}
+
+		private synchronized void clear() {
+			map.clear();
+		}
+	}
+
+	/**
+	 * A read-only map view of a {@link LazyProject}. The keys are taken from the current index,
+	 * and values are loaded when they are retrieved.
+	 *
+	 * @param <V> the type of value
+	 */
+	private class LazyMap<V> extends AbstractMap<FileDescriptor,V> {
+		private final Function<Index,Set<FileDescriptor>> keys;
+		private final Function<FileDescriptor,V> loader;
+
+		private LazyMap(Function<Index,Set<FileDescriptor>> keys,
+				Function<FileDescriptor,V> loader) {
+			this.keys = keys;
+			this.loader = loader;
+		}
+
+		@Override
+		public V get(Object key) {
+			if (!(key instanceof FileDescriptor fileDescription))
+				return null;
+			return loader.apply(fileDescription);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return keys.apply(index).contains(key);
+		}
+
+		@Override
+		public Set<FileDescriptor> keySet() {
+			return Collections.unmodifiableSet(keys.apply(index));
+		}
+
+		@Override
+		public int size() {
+			return keys.apply(index).size();
+		}
+
+		@Override
+		public Set<Entry<FileDescriptor,V>> entrySet() {
+			Set<FileDescriptor> keySet = keys.apply(index);
+			return new AbstractSet<>() {
+				@Override
+				public Iterator<Entry<FileDescriptor,V>> iterator() {
+					Iterator<FileDescriptor> it = keySet.iterator();
+					return new Iterator<>() {
+						@Override
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+
+						@Override
+						public Entry<FileDescriptor,V> next() {
+							FileDescriptor key = it.next();
+							return new SimpleImmutableEntry<>(key, loader.apply(key));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return keySet.size();
+				}
+			};
+		}
+	}
+}
@@ -30,6 +30,7 @@ package com.dialoguebranch.parser;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -37,6 +38,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import com.dialoguebranch.model.*;
 import nl.rrd.utils.exception.ParseException;
@@ -54,11 +58,22 @@ import com.dialoguebranch.i18n.Translator;
  * extension of {@link Constants#DLB_TRANSLATION_FILE_EXTENSION} as provided through the given
  * {@link FileLoader} implementation.
  *
+ * <p>By default, all files are parsed one by one on the calling thread. If an {@link Executor} is
+ * provided (for example {@link java.util.concurrent.ForkJoinPool#commonPool()}), the parser works
+ * in two phases. In the first phase all script and translation files are parsed concurrently on
+ * the executor. In the second phase, once every file has been parsed, the results are merged in
+ * the order in which the files were listed by the {@link FileLoader}, external node pointers are
+ * validated and the translated dialogues are created. This means that the parse errors and warnings
+ * in the {@link ProjectParserResult} are always reported in the same order, regardless of the order
+ * in which the files were actually parsed. Note that the {@link FileLoader} should then support
+ * opening files from multiple threads at the same time.</p>
+ *
  * @author Dennis Hofs (Roessingh Research and Development)
  * @author Harm op den Akker (Fruit Tree Labs)
  */
 public class ProjectParser {
 	private final FileLoader fileLoader;
+	private final Executor executor;
 
 	private final Map<FileDescriptor, Dialogue> dialogues = new LinkedHashMap<>();
 	private final Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>>
@@ -77,7 +92,36 @@ public class ProjectParser {
 	 * @param fileLoader the {@link FileLoader} implementation.
 	 */
 	public ProjectParser(FileLoader fileLoader) {
+		this(fileLoader, null);
+	}
+
+	/**
+	 * Creates an instance of a {@link ProjectParser} with a given {@link FileLoader} that is used
+	 * to retrieve a complete set of files (both script and translation files) to use in this
+	 * parser, and an {@link Executor} that is used to parse these files concurrently. If the
+	 * {@code executor} is {@code null}, all files will be parsed sequentially on the calling
+	 * thread.
+	 *
+	 * @param fileLoader the {@link FileLoader} implementation.
+	 * @param executor the {@link Executor} used to parse files concurrently, or {@code null}.
+	 */
+	public ProjectParser(FileLoader fileLoader, Executor executor) {
 		this.fileLoader = fileLoader;
+		this.executor = executor;
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the {@link Executor} that is used to parse files concurrently, or {@code null} if
+	 * files are parsed sequentially on the calling thread.
+	 *
+	 * @return the {@link Executor} used to parse files concurrently, or {@code null}.
+	 */
+	public Executor getExecutor() {
+		return executor;
 	}
 
 	// -------------------------------------------------------
@@ -119,6 +163,136 @@ public class ProjectParser {
 		return projectParserResult;
 	}
 
+	/**
+	 * Creates a {@link LazyProject} that only indexes the files listed by the {@link FileLoader}.
+	 * Dialogue and translation files are parsed when they are first needed, and kept in caches
+	 * with the specified maximum size. Unlike {@link #parse()}, this method does not parse or
+	 * validate any files, so there are no parse errors to report.
+	 *
+	 * @param maxCachedDialogues the maximum number of entries in each cache of the project (at
+	 *                           least 1)
+	 * @return the lazy project
+	 * @throws IOException if the files cannot be listed
+	 */
+	public LazyProject parseLazy(int maxCachedDialogues) throws IOException {
+		LazyProject project = new LazyProject(fileLoader, maxCachedDialogues);
+		project.reload();
+		return project;
+	}
+
+	/**
+	 * Re-parses only the specified changed files of a project that was parsed before, and updates
+	 * the project. Translated dialogues are only created again for the changed translation files
+	 * and for the translations of changed dialogues. The {@link FileLoader} of this parser should
+	 * provide the current versions of the changed files.
+	 *
+	 * <p>The project is only updated if all changed files could be parsed and validated. In that
+	 * case all new dialogues and translations are swapped into the project in one atomic step
+	 * (see {@link Project#setContents(Map, Map, Map) Project.setContents()}), and the returned
+	 * result contains the project. Otherwise the project is not changed at all, and the returned
+	 * result contains the parse errors.</p>
+	 *
+	 * @param project the project to update
+	 * @param changedFiles the files that were added or modified
+	 * @param removedFiles the files that were removed
+	 * @return the parse result
+	 * @throws IOException if a reading error occurs
+	 */
+	public ProjectParserResult parseChanges(Project project,
+			Collection<FileDescriptor> changedFiles, Collection<FileDescriptor> removedFiles)
+			throws IOException {
+		ProjectParserResult readResult = new ProjectParserResult(fileLoader);
+		dialogues.clear();
+		translations.clear();
+		translatedDialogues.clear();
+		dialogues.putAll(project.getSourceDialogues());
+		translations.putAll(project.getTranslations());
+		translatedDialogues.putAll(project.getDialogues());
+
+		Set<String> changedDialogueNames = new HashSet<>();
+		Set<FileDescriptor> changedTranslations = new HashSet<>();
+		for (FileDescriptor fileDescription : removedFiles) {
+			if (fileDescription.getFileType() == FileType.SCRIPT) {
+				dialogues.remove(fileDescription);
+				changedDialogueNames.add(fileDescription.getDialogueName());
+			} else {
+				translations.remove(fileDescription);
+			}
+			translatedDialogues.remove(fileDescription);
+		}
+
+		Map<FileDescriptor, CompletableFuture<ParserResult>> dialogueResults =
+				new LinkedHashMap<>();
+		Map<FileDescriptor, CompletableFuture<TranslationParserResult>> translationResults =
+				new LinkedHashMap<>();
+		for (FileDescriptor fileDescription : changedFiles) {
+			if (fileDescription.getFileType() == FileType.SCRIPT) {
+				dialogueResults.put(fileDescription,
+						submit(() -> parseDialogueFile(fileDescription)));
+			} else if (fileDescription.getFileType() == FileType.TRANSLATION) {
+				translationResults.put(fileDescription,
+						submit(() -> parseTranslationFile(fileDescription)));
+			}
+		}
+		for (FileDescriptor fileDescription : dialogueResults.keySet()) {
+			ParserResult dlgReadResult = await(dialogueResults.get(fileDescription));
+			if (dlgReadResult.getParseErrors().isEmpty()) {
+				dialogues.put(fileDescription, dlgReadResult.getDialogue());
+				translatedDialogues.put(fileDescription, dlgReadResult.getDialogue());
+				changedDialogueNames.add(fileDescription.getDialogueName());
+			} else {
+				getParseErrors(readResult, fileDescription).addAll(dlgReadResult.getParseErrors());
+			}
+		}
+		for (FileDescriptor fileDescription : translationResults.keySet()) {
+			TranslationParserResult transParseResult = await(
+					translationResults.get(fileDescription));
+			if (!transParseResult.getParseErrors().isEmpty()) {
+				getParseErrors(readResult, fileDescription).addAll(
+						transParseResult.getParseErrors());
+			}
+			if (!transParseResult.getWarnings().isEmpty()) {
+				getWarnings(readResult, fileDescription).addAll(transParseResult.getWarnings());
+			}
+			if (transParseResult.getParseErrors().isEmpty()) {
+				translations.put(fileDescription, transParseResult.getTranslations());
+				changedTranslations.add(fileDescription);
+			}
+		}
+		if (!readResult.getParseErrors().isEmpty())
+			return readResult;
+
+		for (FileDescriptor fileDescription : translations.keySet()) {
+			if ((changedTranslations.contains(fileDescription) ||
+					changedDialogueNames.contains(fileDescription.getDialogueName())) &&
+					dialogues.containsKey(getScriptDescriptor(fileDescription))) {
+				addDialogueConflictError(readResult, fileDescription);
+			}
+		}
+		if (!readResult.getParseErrors().isEmpty())
+			return readResult;
+
+		validateDialogueReferences(readResult);
+		if (!readResult.getParseErrors().isEmpty())
+			return readResult;
+
+		List<FileDescriptor> affectedTranslations = new ArrayList<>();
+		for (FileDescriptor fileDescription : translations.keySet()) {
+			if (changedTranslations.contains(fileDescription) ||
+					changedDialogueNames.contains(fileDescription.getDialogueName())) {
+				affectedTranslations.add(fileDescription);
+			}
+		}
+		translateDialogues(affectedTranslations, readResult);
+		if (!readResult.getParseErrors().isEmpty())
+			return readResult;
+
+		project.setContents(new LinkedHashMap<>(translatedDialogues),
+				new LinkedHashMap<>(dialogues), new LinkedHashMap<>(translations));
+		readResult.setProject(project);
+		return readResult;
+	}
+
 	/**
 	 * Tries to parse all project files (dialogue and translation files). This method fills
 	 * variables "dialogues" and "translations". Any parse errors will be added to the provided
@@ -144,42 +318,44 @@ public class ProjectParser {
 				translationFiles.add(fileDescription);
 		}
 
-		Set<String> dialogueNames = new HashSet<>();
 		for (FileDescriptor fileDescription : dialogueFiles) {
 			fileDescriptionsSet.add(fileDescription);
-			ParserResult dlgReadResult = parseDialogueFile(fileDescription);
+		}
+
+		// Phase 1: parse all dialogue and translation files (concurrently if an executor is set)
+		List<CompletableFuture<ParserResult>> dialogueResults = new ArrayList<>();
+		for (FileDescriptor fileDescription : dialogueFiles) {
+			dialogueResults.add(submit(() -> parseDialogueFile(fileDescription)));
+		}
+		List<CompletableFuture<TranslationParserResult>> translationResults = new ArrayList<>();
+		for (FileDescriptor fileDescription : translationFiles) {
+			if (fileDescriptionsSet.contains(getScriptDescriptor(fileDescription)))
+				translationResults.add(null);
+			else
+				translationResults.add(submit(() -> parseTranslationFile(fileDescription)));
+		}
+
+		// Phase 2: merge the results in the order in which the files were listed
+		for (int i = 0; i < dialogueFiles.size(); i++) {
+			FileDescriptor fileDescription = dialogueFiles.get(i);
+			ParserResult dlgReadResult = await(dialogueResults.get(i));
 			if (dlgReadResult.getParseErrors().isEmpty()) {
 				dialogues.put(fileDescription, dlgReadResult.getDialogue());
-				dialogueNames.add(dlgReadResult.getDialogue().getDialogueName());
 			} else {
 				getParseErrors(readResult, fileDescription).addAll(dlgReadResult.getParseErrors());
 			}
 		}
 
-		if (readResult.getParseErrors().isEmpty()) {
-			// validate referenced dialogues in external node pointers
-			for (FileDescriptor fileDescription : dialogues.keySet()) {
-				Dialogue dlg = dialogues.get(fileDescription);
-				for (String refName : dlg.getDialoguesReferenced()) {
-					if (!dialogueNames.contains(refName)) {
-						getParseErrors(readResult, fileDescription).add(
-							new ParseException(String.format(
-							"Found external node pointer in dialogue %s to unknown dialogue %s",
-							dlg.getDialogueName(), refName)));
-					}
-				}
-			}
-		}
+		if (readResult.getParseErrors().isEmpty())
+			validateDialogueReferences(readResult);
 
-		for (FileDescriptor fileDescription : translationFiles) {
-			if (fileDescriptionsSet.contains(fileDescription)) {
-				getParseErrors(readResult, fileDescription).add(new ParseException(
-					String.format("Found both translation file \"%s\" and dialogue file \"%s.dlb\"",
-					fileDescription.getFilePath(), fileDescription.getFilePath()) + ": " +
-					fileDescription));
+		for (int i = 0; i < translationFiles.size(); i++) {
+			FileDescriptor fileDescription = translationFiles.get(i);
+			if (fileDescriptionsSet.contains(getScriptDescriptor(fileDescription))) {
+				addDialogueConflictError(readResult, fileDescription);
 				continue;
 			}
-			TranslationParserResult transParseResult = parseTranslationFile(fileDescription);
+			TranslationParserResult transParseResult = await(translationResults.get(i));
 			if (!transParseResult.getParseErrors().isEmpty()) {
 				getParseErrors(readResult, fileDescription).addAll(
 						transParseResult.getParseErrors());
@@ -192,6 +368,51 @@ public class ProjectParser {
 		}
 	}
 
+	/**
+	 * Validates the referenced dialogues in external node pointers of all dialogues in variable
+	 * "dialogues". Any parse errors will be added to "readResult".
+	 *
+	 * @param readResult the read result
+	 */
+	private void validateDialogueReferences(ProjectParserResult readResult) {
+		Set<String> dialogueNames = new HashSet<>();
+		for (Dialogue dlg : dialogues.values()) {
+			dialogueNames.add(dlg.getDialogueName());
+		}
+		for (FileDescriptor fileDescription : dialogues.keySet()) {
+			Dialogue dlg = dialogues.get(fileDescription);
+			for (String refName : dlg.getDialoguesReferenced()) {
+				if (!dialogueNames.contains(refName)) {
+					getParseErrors(readResult, fileDescription).add(
+						new ParseException(String.format(
+						"Found external node pointer in dialogue %s to unknown dialogue %s",
+						dlg.getDialogueName(), refName)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the descriptor of the dialogue file with the same dialogue name and language as the
+	 * specified translation file. A project can't have both files.
+	 *
+	 * @param translationFile the translation file
+	 * @return the descriptor of the dialogue file
+	 */
+	private static FileDescriptor getScriptDescriptor(FileDescriptor translationFile) {
+		return new FileDescriptor(translationFile.getLanguage(),
+				translationFile.getDialogueName() + Constants.DLB_SCRIPT_FILE_EXTENSION,
+				FileType.SCRIPT);
+	}
+
+	private void addDialogueConflictError(ProjectParserResult readResult,
+			FileDescriptor translationFile) {
+		getParseErrors(readResult, translationFile).add(new ParseException(
+				String.format("Found both translation file \"%s\" and dialogue file \"%s\"",
+				translationFile.getFilePath(), translationFile.getDialogueName() +
+				Constants.DLB_SCRIPT_FILE_EXTENSION) + ": " + translationFile));
+	}
+
 	private List<ParseException> getParseErrors(ProjectParserResult readResult,
 												FileDescriptor fileDescription) {
 		String path = fileDescriptionToPath(fileDescription);
@@ -229,17 +450,98 @@ public class ProjectParser {
 			translatedDialogues.put(fileDescription, dlg);
 		}
 
-		for (FileDescriptor fileDescription : translations.keySet()) {
+		translateDialogues(translations.keySet(), readResult);
+	}
+
+	/**
+	 * Translates the source dialogues for the specified translation files and puts the results in
+	 * variable "translatedDialogues". Any parse errors will be added to "readResult".
+	 *
+	 * @param translationFiles the translation files
+	 * @param readResult the read result
+	 */
+	private void translateDialogues(Collection<FileDescriptor> translationFiles,
+			ProjectParserResult readResult) {
+		Map<FileDescriptor, CompletableFuture<Dialogue>> translatedResults =
+				new LinkedHashMap<>();
+		for (FileDescriptor fileDescription : translationFiles) {
 			Dialogue source = findSourceDialogue(fileDescription.getDialogueName());
 			if (source == null) {
+				translatedResults.put(fileDescription, null);
+				continue;
+			}
+			Map<Translatable,List<ContextTranslation>> translation =
+					translations.get(fileDescription);
+			translatedResults.put(fileDescription, submit(() -> {
+				Translator translator = new Translator(new TranslationContext(), translation);
+				Dialogue translated = translator.translate(source);
+				translated.freeze();
+				return translated;
+			}));
+		}
+
+		for (FileDescriptor fileDescription : translatedResults.keySet()) {
+			CompletableFuture<Dialogue> translated = translatedResults.get(fileDescription);
+			if (translated == null) {
 				getParseErrors(readResult, fileDescription).add(new ParseException(
 						"No source dialogue found for translation: " + fileDescription));
 				continue;
 			}
-			Translator translator = new Translator(
-					new TranslationContext(), translations.get(fileDescription));
-			Dialogue translated = translator.translate(source);
-			translatedDialogues.put(fileDescription, translated);
+			try {
+				translatedDialogues.put(fileDescription, await(translated));
+			} catch (IOException ex) {
+				// translating a dialogue does not perform any I/O
+				throw new RuntimeException(ex.getMessage(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Runs the specified task on the executor of this parser. If no executor was set, the task is
+	 * run immediately on the calling thread and this method returns a completed future.
+	 *
+	 * @param task the task to run
+	 * @return the future result of the task
+	 * @param <T> the type of result
+	 */
+	private <T> CompletableFuture<T> submit(ParseTask<T> task) {
+		if (executor == null) {
+			try {
+				return CompletableFuture.completedFuture(task.run());
+			} catch (IOException | RuntimeException ex) {
+				return CompletableFuture.failedFuture(ex);
+			}
+		}
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return task.run();
+			} catch (IOException ex) {
+				throw new CompletionException(ex);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Waits for the specified future to complete and returns its result. If the task failed with
+	 * an {@link IOException} or a {@link RuntimeException}, that exception is rethrown.
+	 *
+	 * @param future the future
+	 * @return the result of the future
+	 * @param <T> the type of result
+	 * @throws IOException if the task failed with an {@link IOException}
+	 */
+	private <T> T await(CompletableFuture<T> future) throws IOException {
+		try {
+			return future.join();
+		} catch (CompletionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException ioException)
+				throw ioException;
+			if (cause instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			if (cause instanceof Error error)
+				throw error;
+			throw ex;
 		}
 	}
 
@@ -268,7 +570,7 @@ public class ProjectParser {
 			return dialogues.get(lngMap.get(language));
 	}
 
-	private ParserResult parseDialogueFile(FileDescriptor description)
+	ParserResult parseDialogueFile(FileDescriptor description)
 			throws IOException {
 		String dlgName = description.getDialogueName();
 		try (DialogueBranchParser dialogueBranchParser = new DialogueBranchParser(dlgName,
@@ -277,7 +579,7 @@ public class ProjectParser {
 		}
 	}
 
-	private TranslationParserResult parseTranslationFile(FileDescriptor description)
+	TranslationParserResult parseTranslationFile(FileDescriptor description)
 			throws IOException {
 		try (Reader reader = fileLoader.openFile(description)) {
 			return TranslationParser.parse(reader);
@@ -287,4 +589,14 @@ public class ProjectParser {
 	private String fileDescriptionToPath(FileDescriptor fileDescription) {
 		return fileDescription.getLanguage() + "/" + fileDescription.getFilePath();
 	}
+
+	/**
+	 * A task that parses a single file and that may be run on the executor of the {@link
+	 * ProjectParser}.
+	 *
+	 * @param <T> the type of result
+	 */
+	private interface ParseTask<T> {
+		T run() throws IOException;
+	}
 }
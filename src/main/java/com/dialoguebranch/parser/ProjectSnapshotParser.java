@@ -0,0 +1,522 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.parser;
+
+import com.dialoguebranch.i18n.ContextTranslation;
+import com.dialoguebranch.i18n.Translatable;
+import com.dialoguebranch.i18n.TranslationIndex;
+import com.dialoguebranch.model.Dialogue;
+import com.dialoguebranch.model.FileDescriptor;
+import com.dialoguebranch.model.FileType;
+import com.dialoguebranch.model.Node;
+import com.dialoguebranch.model.NodeBody;
+import com.dialoguebranch.model.NodeHeader;
+import com.dialoguebranch.model.Project;
+import com.dialoguebranch.model.Reply;
+import com.dialoguebranch.model.VariableString;
+import com.dialoguebranch.model.command.*;
+import com.dialoguebranch.model.nodepointer.ExternalNodePointer;
+import com.dialoguebranch.model.nodepointer.InternalNodePointer;
+import com.dialoguebranch.model.nodepointer.NodePointer;
+import com.dialoguebranch.writer.ProjectSnapshotWriter;
+import nl.rrd.utils.exception.LineNumberParseException;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.expressions.Expression;
+import nl.rrd.utils.expressions.types.AssignExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * This class can read a binary project snapshot that was written by the {@link
+ * ProjectSnapshotWriter} and map it straight back into a {@link Project}, without tokenizing and
+ * parsing the dialogue scripts and translation files.
+ *
+ * <p>The snapshot header contains a format version, a checksum of the source files and a checksum
+ * of the snapshot data. If any of them does not match, the snapshot is rejected. The method {@link
+ * #load(FileLoader, File)} then falls back to parsing the source files with a {@link
+ * ProjectParser}.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ProjectSnapshotParser {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProjectSnapshotParser.class);
+
+	private final DataInputStream in;
+	private String[] strings;
+	private final List<Dialogue> sourceDialogues = new ArrayList<>();
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	private ProjectSnapshotParser(byte[] payload) {
+		in = new DataInputStream(new ByteArrayInputStream(payload));
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Loads the project from the specified snapshot file if it exists and if it matches the
+	 * current source files as provided by the {@link FileLoader}. Otherwise, this method parses
+	 * the source files with a {@link ProjectParser}.
+	 *
+	 * @param fileLoader the file loader for the source files
+	 * @param snapshotFile the snapshot file
+	 * @return the parse result
+	 * @throws IOException if a reading error occurs
+	 */
+	public static ProjectParserResult load(FileLoader fileLoader, File snapshotFile)
+			throws IOException {
+		if (snapshotFile.isFile()) {
+			long sourceChecksum = computeSourceChecksum(fileLoader);
+			try (InputStream input = new BufferedInputStream(
+					new FileInputStream(snapshotFile))) {
+				Project project = read(input, sourceChecksum);
+				ProjectParserResult result = new ProjectParserResult(fileLoader);
+				result.setProject(project);
+				return result;
+			} catch (ParseException ex) {
+				logger.info("Can't use project snapshot " + snapshotFile + ", parsing " +
+						"source files instead: " + ex.getMessage());
+			}
+		}
+		return new ProjectParser(fileLoader).parse();
+	}
+
+	/**
+	 * Reads a project snapshot from the specified input stream. It verifies the header of the
+	 * snapshot against the current format version, the specified source checksum and the
+	 * checksum of the snapshot data. This method does not close the input stream.
+	 *
+	 * @param input the input stream
+	 * @param sourceChecksum the checksum of the current source files as calculated by {@link
+	 * #computeSourceChecksum(FileLoader) computeSourceChecksum()}
+	 * @return the project
+	 * @throws ParseException if the snapshot is invalid or outdated
+	 * @throws IOException if a reading error occurs
+	 */
+	public static Project read(InputStream input, long sourceChecksum)
+			throws ParseException, IOException {
+		DataInputStream dataInput = new DataInputStream(input);
+		byte[] payload;
+		try {
+			if (dataInput.readInt() != ProjectSnapshotWriter.SNAPSHOT_MAGIC)
+				throw new ParseException("Not a project snapshot");
+			int version = dataInput.readInt();
+			if (version != ProjectSnapshotWriter.SNAPSHOT_VERSION) {
+				throw new ParseException("Unsupported snapshot version: " + version);
+			}
+			if (dataInput.readLong() != sourceChecksum)
+				throw new ParseException("Snapshot does not match source files");
+			long payloadChecksum = dataInput.readLong();
+			int length = dataInput.readInt();
+			if (length < 0)
+				throw new ParseException("Invalid snapshot length: " + length);
+			payload = dataInput.readNBytes(length);
+			if (payload.length != length)
+				throw new ParseException("Unexpected end of snapshot");
+			CRC32C crc = new CRC32C();
+			crc.update(payload);
+			if (crc.getValue() != payloadChecksum)
+				throw new ParseException("Snapshot checksum mismatch");
+		} catch (EOFException ex) {
+			throw new ParseException("Unexpected end of snapshot", ex);
+		}
+		ProjectSnapshotParser parser = new ProjectSnapshotParser(payload);
+		try {
+			return parser.readPayload();
+		} catch (EOFException ex) {
+			throw new ParseException("Unexpected end of snapshot", ex);
+		} catch (RuntimeException ex) {
+			throw new ParseException("Invalid snapshot data: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Calculates a checksum of all source files that are provided by the specified {@link
+	 * FileLoader}. It includes the file descriptors and the file contents.
+	 *
+	 * @param fileLoader the file loader
+	 * @return the checksum
+	 * @throws IOException if a reading error occurs
+	 */
+	public static long computeSourceChecksum(FileLoader fileLoader) throws IOException {
+		CRC32C crc = new CRC32C();
+		char[] buffer = new char[8192];
+		for (FileDescriptor descriptor : fileLoader.listDialogueBranchFiles()) {
+			String key = descriptor.getLanguage() + "/" + descriptor.getFilePath() + "/" +
+					descriptor.getFileType() + "\n";
+			crc.update(key.getBytes(StandardCharsets.UTF_8));
+			if (descriptor.getFileType() != FileType.SCRIPT &&
+					descriptor.getFileType() != FileType.TRANSLATION) {
+				continue;
+			}
+			try (Reader reader = fileLoader.openFile(descriptor)) {
+				int len;
+				while ((len = reader.read(buffer)) > 0) {
+					crc.update(new String(buffer, 0, len).getBytes(StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return crc.getValue();
+	}
+
+	private Project readPayload() throws IOException, ParseException {
+		int stringCount = readVarInt();
+		strings = new String[stringCount];
+		for (int i = 0; i < stringCount; i++) {
+			int length = readVarInt();
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		Map<FileDescriptor,Dialogue> sourceDialogueMap = new LinkedHashMap<>();
+		int count = readVarInt();
+		for (int i = 0; i < count; i++) {
+			FileDescriptor descriptor = readFileDescriptor();
+			Dialogue dialogue = readDialogue();
+			sourceDialogues.add(dialogue);
+			sourceDialogueMap.put(descriptor, dialogue);
+		}
+		Map<FileDescriptor,Dialogue> dialogues = new LinkedHashMap<>();
+		count = readVarInt();
+		for (int i = 0; i < count; i++) {
+			FileDescriptor descriptor = readFileDescriptor();
+			int type = in.readByte();
+			if (type == ProjectSnapshotWriter.DIALOGUE_SOURCE)
+				dialogues.put(descriptor, sourceDialogues.get(readVarInt()));
+			else if (type == ProjectSnapshotWriter.DIALOGUE_INLINE)
+				dialogues.put(descriptor, readDialogue());
+			else
+				throw new ParseException("Invalid dialogue type: " + type);
+		}
+		Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>> translations =
+				new LinkedHashMap<>();
+		count = readVarInt();
+		for (int i = 0; i < count; i++) {
+			FileDescriptor descriptor = readFileDescriptor();
+			Map<Translatable,List<ContextTranslation>> translationMap = new LinkedHashMap<>();
+			int sourceCount = readVarInt();
+			for (int j = 0; j < sourceCount; j++) {
+				Translatable source = readTranslatable();
+				int transCount = readVarInt();
+				List<ContextTranslation> contextTranslations = new ArrayList<>(transCount);
+				for (int k = 0; k < transCount; k++) {
+					Set<String> context = readStrings();
+					contextTranslations.add(new ContextTranslation(context,
+							readTranslatable()));
+				}
+				translationMap.put(source, contextTranslations);
+			}
+			translations.put(descriptor, new TranslationIndex(translationMap));
+		}
+		Project project = new Project();
+		project.setDialogues(dialogues);
+		project.setSourceDialogues(sourceDialogueMap);
+		project.setTranslations(translations);
+		return project;
+	}
+
+	private FileDescriptor readFileDescriptor() throws IOException {
+		String language = readString();
+		String filePath = readString();
+		FileType fileType = FileType.valueOf(readString());
+		return new FileDescriptor(language, filePath, fileType);
+	}
+
+	private Dialogue readDialogue() throws IOException, ParseException {
+		Dialogue dialogue = new Dialogue(readString());
+		int nodeCount = readVarInt();
+		for (int i = 0; i < nodeCount; i++) {
+			NodeHeader header = new NodeHeader(readString());
+			header.setSpeaker(readString());
+			int tagCount = readVarInt();
+			for (int j = 0; j < tagCount; j++) {
+				header.addOptionalTag(readString(), readString());
+			}
+			dialogue.addNode(new Node(header, readBody()));
+		}
+		dialogue.freeze();
+		return dialogue;
+	}
+
+	private NodeBody readBody() throws IOException, ParseException {
+		NodeBody body = new NodeBody();
+		for (NodeBody.Segment segment : readSegments()) {
+			body.addSegment(segment);
+		}
+		int replyCount = readVarInt();
+		for (int i = 0; i < replyCount; i++) {
+			body.addReply(readReply());
+		}
+		return body;
+	}
+
+	private List<NodeBody.Segment> readSegments() throws IOException, ParseException {
+		int count = readVarInt();
+		List<NodeBody.Segment> segments = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int type = in.readByte();
+			if (type == ProjectSnapshotWriter.SEGMENT_TEXT)
+				segments.add(new NodeBody.TextSegment(readVariableString()));
+			else if (type == ProjectSnapshotWriter.SEGMENT_COMMAND)
+				segments.add(new NodeBody.CommandSegment(readCommand()));
+			else
+				throw new ParseException("Invalid segment type: " + type);
+		}
+		return segments;
+	}
+
+	private Reply readReply() throws IOException, ParseException {
+		int replyId = readVarInt();
+		NodeBody statement = null;
+		if (in.readBoolean())
+			statement = readBody();
+		NodePointer pointer = readNodePointer();
+		Reply reply = new Reply(replyId, statement, pointer);
+		int commandCount = readVarInt();
+		for (int i = 0; i < commandCount; i++) {
+			reply.addCommand(readCommand());
+		}
+		return reply;
+	}
+
+	private NodePointer readNodePointer() throws IOException, ParseException {
+		int type = in.readByte();
+		if (type == ProjectSnapshotWriter.POINTER_INTERNAL) {
+			return new InternalNodePointer(readString(), readString());
+		} else if (type == ProjectSnapshotWriter.POINTER_EXTERNAL) {
+			String originDialogueName = readString();
+			String originNodeId = readString();
+			String targetDialogueReference = readString();
+			String targetNodeId = readString();
+			return new ExternalNodePointer(originDialogueName, originNodeId,
+					targetDialogueReference, targetNodeId);
+		} else {
+			throw new ParseException("Invalid node pointer type: " + type);
+		}
+	}
+
+	private Command readCommand() throws IOException, ParseException {
+		int type = in.readByte();
+		switch (type) {
+			case ProjectSnapshotWriter.COMMAND_ACTION:
+				ActionCommand actionCommand = new ActionCommand(readString(),
+						readVariableString());
+				int paramCount = readVarInt();
+				for (int i = 0; i < paramCount; i++) {
+					actionCommand.addParameter(readString(), readVariableString());
+				}
+				return actionCommand;
+			case ProjectSnapshotWriter.COMMAND_IF:
+				IfCommand ifCommand = new IfCommand();
+				int clauseCount = readVarInt();
+				for (int i = 0; i < clauseCount; i++) {
+					Expression expression = readExpression();
+					ifCommand.addIfClause(new IfCommand.Clause(expression, readBody()));
+				}
+				if (in.readBoolean())
+					ifCommand.setElseClause(readBody());
+				return ifCommand;
+			case ProjectSnapshotWriter.COMMAND_RANDOM:
+				RandomCommand randomCommand = new RandomCommand();
+				clauseCount = readVarInt();
+				for (int i = 0; i < clauseCount; i++) {
+					float weight = in.readFloat();
+					randomCommand.addClause(new RandomCommand.Clause(weight, readBody()));
+				}
+				return randomCommand;
+			case ProjectSnapshotWriter.COMMAND_SET:
+				Expression expression = readExpression();
+				if (!(expression instanceof AssignExpression assignExpression)) {
+					throw new ParseException(
+							"Expression in \"set\" command is not an assignment");
+				}
+				return new SetCommand(assignExpression);
+			default:
+				return readInputCommand(type);
+		}
+	}
+
+	private InputCommand readInputCommand(int type) throws IOException, ParseException {
+		String description = readString();
+		InputCommand result;
+		switch (type) {
+			case ProjectSnapshotWriter.COMMAND_INPUT_EMAIL:
+				result = new InputEmailCommand(readString());
+				break;
+			case ProjectSnapshotWriter.COMMAND_INPUT_TEXT:
+			case ProjectSnapshotWriter.COMMAND_INPUT_LONGTEXT:
+				String variableName = readString();
+				InputAbstractTextCommand textCommand;
+				if (type == ProjectSnapshotWriter.COMMAND_INPUT_LONGTEXT)
+					textCommand = new InputLongtextCommand(variableName);
+				else
+					textCommand = new InputTextCommand(variableName);
+				textCommand.setMin(readInteger());
+				textCommand.setMax(readInteger());
+				int flags = readVarInt();
+				textCommand.setAllowNumbers((flags & 1) != 0);
+				textCommand.setAllowSpecialCharacters((flags & (1 << 1)) != 0);
+				textCommand.setAllowSpaces((flags & (1 << 2)) != 0);
+				textCommand.setCapCharacters((flags & (1 << 3)) != 0);
+				textCommand.setCapWords((flags & (1 << 4)) != 0);
+				textCommand.setCapSentences((flags & (1 << 5)) != 0);
+				textCommand.setForceCapCharacters((flags & (1 << 6)) != 0);
+				textCommand.setForceCapWords((flags & (1 << 7)) != 0);
+				textCommand.setForceCapSentences((flags & (1 << 8)) != 0);
+				result = textCommand;
+				break;
+			case ProjectSnapshotWriter.COMMAND_INPUT_NUMERIC:
+				InputNumericCommand numericCommand = new InputNumericCommand(readString());
+				numericCommand.setMin(readInteger());
+				numericCommand.setMax(readInteger());
+				result = numericCommand;
+				break;
+			case ProjectSnapshotWriter.COMMAND_INPUT_SET:
+				InputSetCommand setCommand = new InputSetCommand();
+				int optionCount = readVarInt();
+				for (int i = 0; i < optionCount; i++) {
+					InputSetCommand.Option option = new InputSetCommand.Option();
+					option.setVariableName(readString());
+					option.setText(readVariableString());
+					setCommand.getOptions().add(option);
+				}
+				result = setCommand;
+				break;
+			case ProjectSnapshotWriter.COMMAND_INPUT_TIME:
+				InputTimeCommand timeCommand = new InputTimeCommand(readString());
+				timeCommand.setGranularityMinutes(readVarInt());
+				timeCommand.setStartTime(readNullableVariableString());
+				timeCommand.setMinTime(readNullableVariableString());
+				timeCommand.setMaxTime(readNullableVariableString());
+				result = timeCommand;
+				break;
+			default:
+				throw new ParseException("Invalid command type: " + type);
+		}
+		result.setDescription(description);
+		return result;
+	}
+
+	private Expression readExpression() throws IOException, ParseException {
+		String code = readString();
+		try {
+			return ExpressionCommand.parseExpression(code);
+		} catch (LineNumberParseException ex) {
+			throw new ParseException("Invalid expression in snapshot: " + code + ": " +
+					ex.getMessage(), ex);
+		}
+	}
+
+	private Translatable readTranslatable() throws IOException, ParseException {
+		List<NodeBody.Segment> segments = readSegments();
+		NodeBody parent = new NodeBody();
+		for (NodeBody.Segment segment : segments) {
+			parent.addSegment(segment);
+		}
+		return new Translatable(parent, segments);
+	}
+
+	private VariableString readVariableString() throws IOException, ParseException {
+		VariableString result = new VariableString();
+		int count = readVarInt();
+		for (int i = 0; i < count; i++) {
+			int type = in.readByte();
+			if (type == ProjectSnapshotWriter.SEGMENT_TEXT)
+				result.addSegment(new VariableString.TextSegment(readString()));
+			else if (type == ProjectSnapshotWriter.SEGMENT_VARIABLE)
+				result.addSegment(new VariableString.VariableSegment(readString()));
+			else
+				throw new ParseException("Invalid variable string segment type: " + type);
+		}
+		return result;
+	}
+
+	private VariableString readNullableVariableString() throws IOException, ParseException {
+		if (!in.readBoolean())
+			return null;
+		return readVariableString();
+	}
+
+	private Set<String> readStrings() throws IOException {
+		int count = readVarInt();
+		Set<String> result = new LinkedHashSet<>();
+		for (int i = 0; i < count; i++) {
+			result.add(readString());
+		}
+		return result;
+	}
+
+	private Integer readInteger() throws IOException {
+		if (!in.readBoolean())
+			return null;
+		return in.readInt();
+	}
+
+	private String readString() throws IOException {
+		int index = readVarInt();
+		if (index == 0)
+			return null;
+		return strings[index - 1];
+	}
+
+	private int readVarInt() throws IOException {
+		int result = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readUnsignedByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+			shift += 7;
+		}
+	}
+}
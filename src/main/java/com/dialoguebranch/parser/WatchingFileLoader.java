@@ -0,0 +1,482 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.parser;
+
+import com.dialoguebranch.model.Constants;
+import com.dialoguebranch.model.FileDescriptor;
+import com.dialoguebranch.model.FileType;
+import com.dialoguebranch.model.BaseProject;
+import com.dialoguebranch.model.Project;
+import nl.rrd.utils.exception.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link FileLoader} for a directory with the same layout as a {@link DirectoryFileLoader}, that
+ * can also watch the directory for changes and keep a live {@link Project} up to date. Listing and
+ * opening files is delegated to a {@link DirectoryFileLoader}.
+ *
+ * <p>After the project has been parsed, call {@link #watch(BaseProject)} to start watching. This
+ * starts a background thread that uses a {@link WatchService} to detect added, modified and
+ * removed .dlb and .json files. Changes that occur shortly after each other are collected into
+ * one batch. For each batch, only the changed files are parsed again with {@link
+ * ProjectParser#parseChanges(Project, java.util.Collection, java.util.Collection)
+ * ProjectParser.parseChanges()}, which re-translates only the affected dialogues and swaps the
+ * results into the project atomically. If any of the changed files contains errors, the project
+ * is left unchanged and the errors are logged and reported to the {@link ReloadListener}. If the
+ * project is a {@link LazyProject}, the changed files are only invalidated with {@link
+ * LazyProject#invalidate(java.util.Collection, java.util.Collection) LazyProject.invalidate()},
+ * and they are parsed again when they are next needed.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class WatchingFileLoader implements FileLoader, Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(WatchingFileLoader.class);
+
+	/** The default time in milliseconds to wait for more changes before a batch is reloaded */
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	private final DirectoryFileLoader directoryFileLoader;
+	private final Path rootPath;
+	private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+	private ReloadListener reloadListener = null;
+
+	private final Object lock = new Object();
+	private WatchService watchService = null;
+	private Thread watchThread = null;
+	private final Map<WatchKey,Path> watchKeys = new HashMap<>();
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	/**
+	 * Creates an instance of a {@link WatchingFileLoader} for the specified root directory. The
+	 * root directory should contain a subdirectory for each language.
+	 *
+	 * @param rootDirectory the root directory
+	 */
+	public WatchingFileLoader(File rootDirectory) {
+		this.directoryFileLoader = new DirectoryFileLoader(rootDirectory);
+		this.rootPath = rootDirectory.toPath().toAbsolutePath().normalize();
+	}
+
+	// -----------------------------------------------------------
+	// -------------------- Getters & Setters --------------------
+	// -----------------------------------------------------------
+
+	/**
+	 * Returns the root directory for this {@link WatchingFileLoader}.
+	 *
+	 * @return the root directory
+	 */
+	public File getRootDirectory() {
+		return directoryFileLoader.rootDirectory();
+	}
+
+	/**
+	 * Returns the time in milliseconds to wait for more changes, before a batch of changes is
+	 * reloaded. The default is {@link #DEFAULT_DEBOUNCE_MILLIS}.
+	 *
+	 * @return the debounce time in milliseconds
+	 */
+	public long getDebounceMillis() {
+		return debounceMillis;
+	}
+
+	/**
+	 * Sets the time in milliseconds to wait for more changes, before a batch of changes is
+	 * reloaded. The default is {@link #DEFAULT_DEBOUNCE_MILLIS}. This should be set before
+	 * {@link #watch(BaseProject)} is called.
+	 *
+	 * @param debounceMillis the debounce time in milliseconds
+	 */
+	public void setDebounceMillis(long debounceMillis) {
+		this.debounceMillis = debounceMillis;
+	}
+
+	/**
+	 * Returns the listener that is notified after each reload, or {@code null}.
+	 *
+	 * @return the listener that is notified after each reload, or {@code null}
+	 */
+	public ReloadListener getReloadListener() {
+		return reloadListener;
+	}
+
+	/**
+	 * Sets the listener that is notified after each reload. This should be set before {@link
+	 * #watch(BaseProject)} is called.
+	 *
+	 * @param reloadListener the listener that is notified after each reload, or {@code null}
+	 */
+	public void setReloadListener(ReloadListener reloadListener) {
+		this.reloadListener = reloadListener;
+	}
+
+	// -------------------------------------------------------------------
+	// -------------------- Interface Implementations --------------------
+	// -------------------------------------------------------------------
+
+	@Override
+	public List<FileDescriptor> listDialogueBranchFiles() throws IOException {
+		return directoryFileLoader.listDialogueBranchFiles();
+	}
+
+	@Override
+	public Reader openFile(FileDescriptor fileDescription) throws IOException {
+		return directoryFileLoader.openFile(fileDescription);
+	}
+
+	/**
+	 * Stops watching the root directory. This method waits until a reload that is currently in
+	 * progress has completed.
+	 *
+	 * @throws IOException if an error occurs while closing the {@link WatchService}
+	 */
+	@Override
+	public void close() throws IOException {
+		Thread thread;
+		synchronized (lock) {
+			if (watchService == null)
+				return;
+			watchService.close();
+			watchService = null;
+			thread = watchThread;
+			watchThread = null;
+			watchKeys.clear();
+		}
+		if (thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Starts watching the root directory for changes. The specified project should have been
+	 * parsed from this file loader. Any changes will be swapped into this project. This method
+	 * returns immediately. Call {@link #close()} to stop watching.
+	 *
+	 * @param project the project that was parsed from this file loader. This should be a {@link
+	 *                Project} or a {@link LazyProject}.
+	 * @throws IOException if the root directory cannot be watched
+	 */
+	public void watch(BaseProject project) throws IOException {
+		if (!(project instanceof Project) && !(project instanceof LazyProject)) {
+			throw new IllegalArgumentException("Can't reload project of type " +
+					project.getClass().getName());
+		}
+		synchronized (lock) {
+			if (watchService != null)
+				throw new IllegalStateException("Already watching " + rootPath);
+			watchService = FileSystems.getDefault().newWatchService();
+			registerTree(rootPath, null);
+			WatchService service = watchService;
+			watchThread = new Thread(() -> runWatch(service, project),
+					"dlb-watcher-" + rootPath.getFileName());
+			watchThread.setDaemon(true);
+			watchThread.start();
+		}
+	}
+
+	private void runWatch(WatchService service, BaseProject project) {
+		try {
+			while (true) {
+				Set<Path> changedPaths = new LinkedHashSet<>();
+				boolean overflow = collectEvents(service.take(), changedPaths);
+				WatchKey key;
+				while ((key = service.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+					overflow |= collectEvents(key, changedPaths);
+				}
+				try {
+					reload(project, changedPaths, overflow);
+				} catch (Exception ex) {
+					logger.error("Failed to reload DialogueBranch files in " + rootPath + ": " +
+							ex.getMessage(), ex);
+				}
+			}
+		} catch (ClosedWatchServiceException ex) {
+			// closed
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Collects the changed paths from the events of the specified watch key and resets the key.
+	 * New directories are registered with the watch service.
+	 *
+	 * @param key the watch key
+	 * @param changedPaths the set to which the changed paths are added
+	 * @return true if events were lost, false otherwise
+	 */
+	private boolean collectEvents(WatchKey key, Set<Path> changedPaths) {
+		boolean overflow = false;
+		Path dir;
+		synchronized (lock) {
+			dir = watchKeys.get(key);
+		}
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			if (dir == null)
+				continue;
+			Path path = dir.resolve((Path)event.context());
+			changedPaths.add(path);
+			if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE &&
+					Files.isDirectory(path)) {
+				try {
+					synchronized (lock) {
+						if (watchService != null)
+							registerTree(path, changedPaths);
+					}
+				} catch (IOException ex) {
+					logger.warn("Can't watch new directory " + path + ": " + ex.getMessage(), ex);
+				}
+			}
+		}
+		if (!key.reset()) {
+			synchronized (lock) {
+				watchKeys.remove(key);
+			}
+		}
+		return overflow;
+	}
+
+	/**
+	 * Reloads the changed files into the project.
+	 *
+	 * @param project the project
+	 * @param changedPaths the changed paths
+	 * @param overflow true if events were lost, so the complete project should be parsed again
+	 * @throws IOException if a reading error occurs
+	 */
+	private void reload(BaseProject project, Set<Path> changedPaths, boolean overflow)
+			throws IOException {
+		ProjectParserResult result;
+		Set<FileDescriptor> changedFiles = new LinkedHashSet<>();
+		Set<FileDescriptor> removedFiles = new LinkedHashSet<>();
+		if (project instanceof LazyProject lazyProject) {
+			if (overflow) {
+				lazyProject.reload();
+			} else {
+				for (Path path : changedPaths) {
+					addChangedFiles(project, path, changedFiles, removedFiles);
+				}
+				if (changedFiles.isEmpty() && removedFiles.isEmpty())
+					return;
+				lazyProject.invalidate(changedFiles, removedFiles);
+			}
+			result = new ProjectParserResult(this);
+		} else if (overflow) {
+			result = new ProjectParser(this).parse();
+			if (result.getProject() != null) {
+				Project parsed = result.getProject();
+				((Project)project).setContents(parsed.getDialogues(), parsed.getSourceDialogues(),
+						parsed.getTranslations());
+				result.setProject((Project)project);
+			}
+		} else {
+			for (Path path : changedPaths) {
+				addChangedFiles(project, path, changedFiles, removedFiles);
+			}
+			if (changedFiles.isEmpty() && removedFiles.isEmpty())
+				return;
+			result = new ProjectParser(this).parseChanges((Project)project, changedFiles,
+					removedFiles);
+		}
+		if (!result.getParseErrors().isEmpty()) {
+			StringBuilder message = new StringBuilder("Failed to reload DialogueBranch files " +
+					"in " + rootPath + ", keeping previous version:");
+			for (String path : result.getParseErrors().keySet()) {
+				for (ParseException error : result.getParseErrors().get(path)) {
+					message.append("\n  - ").append(path).append(": ")
+							.append(error.getMessage());
+				}
+			}
+			logger.warn(message.toString());
+		} else {
+			logger.info("Reloaded DialogueBranch files in " + rootPath + ": " +
+					(overflow ? "all files" : (changedFiles.size() + " changed, " +
+					removedFiles.size() + " removed")));
+		}
+		ReloadListener listener = reloadListener;
+		if (listener != null)
+			listener.onReload(project, result, changedFiles, removedFiles);
+	}
+
+	/**
+	 * Determines the changed and removed files for a changed path. If the path is a .dlb or .json
+	 * file, it is added to the changed files if it exists, or to the removed files otherwise. If
+	 * the path was a directory that has been removed, all files of the project in that directory
+	 * are added to the removed files.
+	 *
+	 * @param project the project
+	 * @param path the changed path
+	 * @param changedFiles the set of changed files
+	 * @param removedFiles the set of removed files
+	 */
+	private void addChangedFiles(BaseProject project, Path path, Set<FileDescriptor> changedFiles,
+			Set<FileDescriptor> removedFiles) {
+		Path relPath = rootPath.relativize(path.toAbsolutePath().normalize());
+		if (relPath.getNameCount() == 0)
+			return;
+		for (Path part : relPath) {
+			if (part.toString().startsWith("."))
+				return;
+		}
+		String language = relPath.getName(0).toString();
+		String filePath = relPath.getNameCount() == 1 ? "" :
+				relPath.subpath(1, relPath.getNameCount()).toString()
+				.replace(File.separatorChar, '/');
+		FileType fileType = null;
+		if (filePath.endsWith(Constants.DLB_SCRIPT_FILE_EXTENSION))
+			fileType = FileType.SCRIPT;
+		else if (filePath.endsWith(Constants.DLB_TRANSLATION_FILE_EXTENSION))
+			fileType = FileType.TRANSLATION;
+		if (fileType != null && relPath.getNameCount() > 1) {
+			FileDescriptor descriptor = new FileDescriptor(language, filePath, fileType);
+			if (Files.isRegularFile(path)) {
+				removedFiles.remove(descriptor);
+				changedFiles.add(descriptor);
+			} else {
+				changedFiles.remove(descriptor);
+				if (isProjectFile(project, descriptor))
+					removedFiles.add(descriptor);
+			}
+		} else if (!Files.exists(path)) {
+			// a directory may have been removed
+			String prefix = filePath.isEmpty() ? "" : filePath + "/";
+			List<FileDescriptor> projectFiles = new ArrayList<>(
+					project.getSourceDialogues().keySet());
+			projectFiles.addAll(project.getTranslations().keySet());
+			for (FileDescriptor descriptor : projectFiles) {
+				if (descriptor.getLanguage().equals(language) &&
+						descriptor.getFilePath().startsWith(prefix)) {
+					changedFiles.remove(descriptor);
+					removedFiles.add(descriptor);
+				}
+			}
+		}
+	}
+
+	private boolean isProjectFile(BaseProject project, FileDescriptor descriptor) {
+		if (descriptor.getFileType() == FileType.SCRIPT)
+			return project.getSourceDialogues().containsKey(descriptor);
+		else
+			return project.getTranslations().containsKey(descriptor);
+	}
+
+	/**
+	 * Registers the specified directory and all its subdirectories with the watch service. Hidden
+	 * directories below the root directory are skipped with their complete subtree. If "files" is
+	 * not null, the regular files in the registered directories are added to it.
+	 *
+	 * @param dir the directory
+	 * @param files the set to which the regular files should be added, or null
+	 * @throws IOException if a directory cannot be registered
+	 */
+	private void registerTree(Path dir, Set<Path> files) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs)
+					throws IOException {
+				if (!path.equals(rootPath) && path.getFileName().toString().startsWith("."))
+					return FileVisitResult.SKIP_SUBTREE;
+				WatchKey key = path.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				watchKeys.put(key, path);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+				if (files != null && attrs.isRegularFile())
+					files.add(path);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * A listener that is notified after a batch of changed files has been reloaded.
+	 */
+	public interface ReloadListener {
+
+		/**
+		 * Called after a batch of changed files has been reloaded. If the reload was successful,
+		 * the result contains the updated project. Otherwise, the project was not changed and the
+		 * result contains the parse errors. If the project is a {@link LazyProject}, the changed
+		 * files are only invalidated, so the result is always empty. If events were lost and the
+		 * complete project was parsed again, the sets of changed and removed files are empty.
+		 *
+		 * @param project the watched project
+		 * @param result the parse result
+		 * @param changedFiles the files that were added or modified
+		 * @param removedFiles the files that were removed
+		 */
+		void onReload(BaseProject project, ProjectParserResult result,
+				Set<FileDescriptor> changedFiles, Set<FileDescriptor> removedFiles);
+	}
+}
@@ -0,0 +1,490 @@
+/*
+ *
+ *                Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ *
+ *     This material is part of the DialogueBranch Platform, and is covered by the MIT License
+ *                                        as outlined below.
+ *
+ *                                            ----------
+ *
+ * Copyright (c) 2023-2024 Fruit Tree Labs (www.fruittreelabs.com)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.dialoguebranch.writer;
+
+import com.dialoguebranch.i18n.ContextTranslation;
+import com.dialoguebranch.i18n.Translatable;
+import com.dialoguebranch.model.Dialogue;
+import com.dialoguebranch.model.FileDescriptor;
+import com.dialoguebranch.model.Node;
+import com.dialoguebranch.model.NodeBody;
+import com.dialoguebranch.model.BaseProject;
+import com.dialoguebranch.model.Reply;
+import com.dialoguebranch.model.VariableString;
+import com.dialoguebranch.model.command.*;
+import com.dialoguebranch.model.nodepointer.ExternalNodePointer;
+import com.dialoguebranch.model.nodepointer.InternalNodePointer;
+import com.dialoguebranch.model.nodepointer.NodePointer;
+import com.dialoguebranch.parser.FileLoader;
+import com.dialoguebranch.parser.ProjectSnapshotParser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * This class can write a fully parsed project to a compact binary snapshot, which can be
+ * read back with the {@link ProjectSnapshotParser}. Loading a snapshot is much faster than parsing
+ * all dialogue scripts and translation files again, because the snapshot contains the parsed
+ * model: the dialogues with their nodes, body segments, replies and commands, and the translation
+ * maps.
+ *
+ * <p>A snapshot starts with a header that contains a format version, a checksum of the source
+ * files from which the project was parsed, and a checksum of the snapshot data. The {@link
+ * ProjectSnapshotParser} uses this header to detect outdated or corrupt snapshots, so it can fall
+ * back to parsing the source files. All strings in the snapshot are stored once in a string table
+ * and referred to by index.</p>
+ *
+ * <p>Expressions (in "if" and "set" commands) are stored as code and are parsed again when the
+ * snapshot is read. The project metadata is not included.</p>
+ *
+ * @author Harm op den Akker (Fruit Tree Labs)
+ */
+public class ProjectSnapshotWriter {
+
+	/** The magic number at the start of every snapshot ("DLBS") */
+	public static final int SNAPSHOT_MAGIC = 0x444C4253;
+
+	/** The current version of the snapshot format */
+	public static final int SNAPSHOT_VERSION = 2;
+
+	// Type codes of segments. A NodeBody has text and command segments, and a VariableString has
+	// text and variable segments. Each type has its own code, so the reader can tell them apart.
+	public static final int SEGMENT_TEXT = 0;
+	public static final int SEGMENT_COMMAND = 1;
+	public static final int SEGMENT_VARIABLE = 2;
+
+	// Type codes of commands
+	public static final int COMMAND_ACTION = 0;
+	public static final int COMMAND_IF = 1;
+	public static final int COMMAND_RANDOM = 2;
+	public static final int COMMAND_SET = 3;
+	public static final int COMMAND_INPUT_EMAIL = 4;
+	public static final int COMMAND_INPUT_TEXT = 5;
+	public static final int COMMAND_INPUT_LONGTEXT = 6;
+	public static final int COMMAND_INPUT_NUMERIC = 7;
+	public static final int COMMAND_INPUT_SET = 8;
+	public static final int COMMAND_INPUT_TIME = 9;
+
+	// Type codes of node pointers
+	public static final int POINTER_INTERNAL = 0;
+	public static final int POINTER_EXTERNAL = 1;
+
+	// Type codes of dialogues in the map of all dialogues: a reference to a source dialogue, or
+	// a translated dialogue that is written in full
+	public static final int DIALOGUE_SOURCE = 0;
+	public static final int DIALOGUE_INLINE = 1;
+
+	private final Map<String,Integer> strings = new LinkedHashMap<>();
+	private final Map<Dialogue,Integer> sourceDialogueIndices = new IdentityHashMap<>();
+	private DataOutputStream out;
+
+	// --------------------------------------------------------
+	// -------------------- Constructor(s) --------------------
+	// --------------------------------------------------------
+
+	private ProjectSnapshotWriter() {
+	}
+
+	// -------------------------------------------------------
+	// -------------------- Other Methods --------------------
+	// -------------------------------------------------------
+
+	/**
+	 * Writes a snapshot of the specified {@link BaseProject} to the specified file. The project
+	 * should have been parsed from the files that are provided by the specified {@link
+	 * FileLoader}. This method reads these files to calculate the checksum of the sources.
+	 *
+	 * @param project the project
+	 * @param fileLoader the file loader from which the project was parsed
+	 * @param file the snapshot file
+	 * @throws IOException if a reading or writing error occurs
+	 */
+	public static void write(BaseProject project, FileLoader fileLoader, File file)
+			throws IOException {
+		long sourceChecksum = ProjectSnapshotParser.computeSourceChecksum(fileLoader);
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+			write(project, sourceChecksum, output);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the specified {@link BaseProject} to the specified output stream. The
+	 * source checksum should be calculated with {@link
+	 * ProjectSnapshotParser#computeSourceChecksum(FileLoader)
+	 * ProjectSnapshotParser.computeSourceChecksum()}. This method does not close the output
+	 * stream.
+	 *
+	 * @param project the project
+	 * @param sourceChecksum the checksum of the source files
+	 * @param output the output stream
+	 * @throws IOException if a writing error occurs
+	 */
+	public static void write(BaseProject project, long sourceChecksum, OutputStream output)
+			throws IOException {
+		ProjectSnapshotWriter writer = new ProjectSnapshotWriter();
+		byte[] body = writer.writeBody(project);
+		ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(body.length + 1024);
+		DataOutputStream payload = new DataOutputStream(payloadBytes);
+		writeVarInt(payload, writer.strings.size());
+		for (String string : writer.strings.keySet()) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(payload, bytes.length);
+			payload.write(bytes);
+		}
+		payload.write(body);
+		payload.flush();
+		byte[] payloadData = payloadBytes.toByteArray();
+		CRC32C crc = new CRC32C();
+		crc.update(payloadData);
+		DataOutputStream dataOutput = new DataOutputStream(output);
+		dataOutput.writeInt(SNAPSHOT_MAGIC);
+		dataOutput.writeInt(SNAPSHOT_VERSION);
+		dataOutput.writeLong(sourceChecksum);
+		dataOutput.writeLong(crc.getValue());
+		dataOutput.writeInt(payloadData.length);
+		dataOutput.write(payloadData);
+		dataOutput.flush();
+	}
+
+	/**
+	 * Writes all dialogues and translations of the project and returns the written bytes. While
+	 * writing, all strings are collected in the string table.
+	 *
+	 * @param project the project
+	 * @return the written bytes
+	 * @throws IOException if a writing error occurs
+	 */
+	private byte[] writeBody(BaseProject project) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		out = new DataOutputStream(bytes);
+		Map<FileDescriptor,Dialogue> sourceDialogues = project.getSourceDialogues();
+		writeVarInt(sourceDialogues.size());
+		for (FileDescriptor descriptor : sourceDialogues.keySet()) {
+			Dialogue dialogue = sourceDialogues.get(descriptor);
+			sourceDialogueIndices.put(dialogue, sourceDialogueIndices.size());
+			writeFileDescriptor(descriptor);
+			writeDialogue(dialogue);
+		}
+		Map<FileDescriptor,Dialogue> dialogues = project.getDialogues();
+		writeVarInt(dialogues.size());
+		for (FileDescriptor descriptor : dialogues.keySet()) {
+			Dialogue dialogue = dialogues.get(descriptor);
+			writeFileDescriptor(descriptor);
+			Integer sourceIndex = sourceDialogueIndices.get(dialogue);
+			if (sourceIndex != null) {
+				out.writeByte(DIALOGUE_SOURCE);
+				writeVarInt(sourceIndex);
+			} else {
+				out.writeByte(DIALOGUE_INLINE);
+				writeDialogue(dialogue);
+			}
+		}
+		Map<FileDescriptor,Map<Translatable,List<ContextTranslation>>> translations =
+				project.getTranslations();
+		writeVarInt(translations.size());
+		for (FileDescriptor descriptor : translations.keySet()) {
+			writeFileDescriptor(descriptor);
+			Map<Translatable,List<ContextTranslation>> translationMap =
+					translations.get(descriptor);
+			writeVarInt(translationMap.size());
+			for (Translatable source : translationMap.keySet()) {
+				writeTranslatable(source);
+				List<ContextTranslation> contextTranslations = translationMap.get(source);
+				writeVarInt(contextTranslations.size());
+				for (ContextTranslation contextTranslation : contextTranslations) {
+					writeStrings(contextTranslation.context());
+					writeTranslatable(contextTranslation.translation());
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private void writeFileDescriptor(FileDescriptor descriptor) throws IOException {
+		writeString(descriptor.getLanguage());
+		writeString(descriptor.getFilePath());
+		writeString(descriptor.getFileType().name());
+	}
+
+	private void writeDialogue(Dialogue dialogue) throws IOException {
+		writeString(dialogue.getDialogueName());
+		List<Node> nodes = dialogue.getNodes();
+		writeVarInt(nodes.size());
+		for (Node node : nodes) {
+			writeString(node.getHeader().getTitle());
+			writeString(node.getHeader().getSpeaker());
+			Map<String,String> tags = node.getHeader().getOptionalTags();
+			writeVarInt(tags.size());
+			for (String key : tags.keySet()) {
+				writeString(key);
+				writeString(tags.get(key));
+			}
+			writeBody(node.getBody());
+		}
+	}
+
+	private void writeBody(NodeBody body) throws IOException {
+		writeSegments(body.getSegments());
+		writeVarInt(body.getReplies().size());
+		for (Reply reply : body.getReplies()) {
+			writeReply(reply);
+		}
+	}
+
+	private void writeSegments(List<NodeBody.Segment> segments) throws IOException {
+		writeVarInt(segments.size());
+		for (NodeBody.Segment segment : segments) {
+			if (segment instanceof NodeBody.TextSegment textSegment) {
+				out.writeByte(SEGMENT_TEXT);
+				writeVariableString(textSegment.getText());
+			} else {
+				out.writeByte(SEGMENT_COMMAND);
+				writeCommand(((NodeBody.CommandSegment)segment).getCommand());
+			}
+		}
+	}
+
+	private void writeReply(Reply reply) throws IOException {
+		writeVarInt(reply.getReplyId());
+		out.writeBoolean(reply.getStatement() != null);
+		if (reply.getStatement() != null)
+			writeBody(reply.getStatement());
+		writeNodePointer(reply.getNodePointer());
+		writeVarInt(reply.getCommands().size());
+		for (Command command : reply.getCommands()) {
+			writeCommand(command);
+		}
+	}
+
+	private void writeNodePointer(NodePointer pointer) throws IOException {
+		if (pointer instanceof ExternalNodePointer externalPointer) {
+			out.writeByte(POINTER_EXTERNAL);
+			writeString(externalPointer.getOriginDialogueName());
+			writeString(externalPointer.getOriginNodeId());
+			writeString(externalPointer.getTargetDialogueReference());
+			writeString(externalPointer.getTargetNodeId());
+		} else if (pointer instanceof InternalNodePointer) {
+			out.writeByte(POINTER_INTERNAL);
+			writeString(pointer.getOriginNodeId());
+			writeString(pointer.getTargetNodeId());
+		} else {
+			throw new IOException("Unsupported node pointer: " +
+					pointer.getClass().getName());
+		}
+	}
+
+	private void writeCommand(Command command) throws IOException {
+		if (command instanceof ActionCommand actionCommand) {
+			out.writeByte(COMMAND_ACTION);
+			writeString(actionCommand.getType());
+			writeVariableString(actionCommand.getValue());
+			Map<String,VariableString> params = actionCommand.getParameters();
+			writeVarInt(params.size());
+			for (String key : params.keySet()) {
+				writeString(key);
+				writeVariableString(params.get(key));
+			}
+		} else if (command instanceof IfCommand ifCommand) {
+			out.writeByte(COMMAND_IF);
+			writeVarInt(ifCommand.getIfClauses().size());
+			for (IfCommand.Clause clause : ifCommand.getIfClauses()) {
+				writeString(clause.getExpression().toString());
+				writeBody(clause.getStatement());
+			}
+			out.writeBoolean(ifCommand.getElseClause() != null);
+			if (ifCommand.getElseClause() != null)
+				writeBody(ifCommand.getElseClause());
+		} else if (command instanceof RandomCommand randomCommand) {
+			out.writeByte(COMMAND_RANDOM);
+			writeVarInt(randomCommand.getClauses().size());
+			for (RandomCommand.Clause clause : randomCommand.getClauses()) {
+				out.writeFloat(clause.getWeight());
+				writeBody(clause.getStatement());
+			}
+		} else if (command instanceof SetCommand setCommand) {
+			out.writeByte(COMMAND_SET);
+			writeString(setCommand.getExpression().toString());
+		} else if (command instanceof InputCommand inputCommand) {
+			writeInputCommand(inputCommand);
+		} else {
+			throw new IOException("Unsupported command: " + command.getClass().getName());
+		}
+	}
+
+	private void writeInputCommand(InputCommand command) throws IOException {
+		if (command instanceof InputEmailCommand emailCommand) {
+			out.writeByte(COMMAND_INPUT_EMAIL);
+			writeString(command.getDescription());
+			writeString(emailCommand.getVariableName());
+		} else if (command instanceof InputAbstractTextCommand textCommand) {
+			if (command instanceof InputLongtextCommand)
+				out.writeByte(COMMAND_INPUT_LONGTEXT);
+			else
+				out.writeByte(COMMAND_INPUT_TEXT);
+			writeString(command.getDescription());
+			writeString(textCommand.getVariableName());
+			writeInteger(textCommand.getMin());
+			writeInteger(textCommand.getMax());
+			int flags = 0;
+			Boolean[] values = new Boolean[] {
+					textCommand.getAllowNumbers(),
+					textCommand.getAllowSpecialCharacters(),
+					textCommand.getAllowSpaces(),
+					textCommand.getCapCharacters(),
+					textCommand.getCapWords(),
+					textCommand.getCapSentences(),
+					textCommand.getForceCapCharacters(),
+					textCommand.getForceCapWords(),
+					textCommand.getForceCapSentences()
+			};
+			for (int i = 0; i < values.length; i++) {
+				if (values[i])
+					flags |= 1 << i;
+			}
+			writeVarInt(flags);
+		} else if (command instanceof InputNumericCommand numericCommand) {
+			out.writeByte(COMMAND_INPUT_NUMERIC);
+			writeString(command.getDescription());
+			writeString(numericCommand.getVariableName());
+			writeInteger(numericCommand.getMin());
+			writeInteger(numericCommand.getMax());
+		} else if (command instanceof InputSetCommand setCommand) {
+			out.writeByte(COMMAND_INPUT_SET);
+			writeString(command.getDescription());
+			writeVarInt(setCommand.getOptions().size());
+			for (InputSetCommand.Option option : setCommand.getOptions()) {
+				writeString(option.getVariableName());
+				writeVariableString(option.getText());
+			}
+		} else if (command instanceof InputTimeCommand timeCommand) {
+			out.writeByte(COMMAND_INPUT_TIME);
+			writeString(command.getDescription());
+			writeString(timeCommand.getVariableName());
+			writeVarInt(timeCommand.getGranularityMinutes());
+			writeNullableVariableString(timeCommand.getStartTime());
+			writeNullableVariableString(timeCommand.getMinTime());
+			writeNullableVariableString(timeCommand.getMaxTime());
+		} else {
+			throw new IOException("Unsupported input command: " +
+					command.getClass().getName());
+		}
+	}
+
+	private void writeTranslatable(Translatable translatable) throws IOException {
+		writeSegments(translatable.segments());
+	}
+
+	private void writeVariableString(VariableString string) throws IOException {
+		List<VariableString.Segment> segments = string.getSegments();
+		writeVarInt(segments.size());
+		for (VariableString.Segment segment : segments) {
+			if (segment instanceof VariableString.TextSegment textSegment) {
+				out.writeByte(SEGMENT_TEXT);
+				writeString(textSegment.getText());
+			} else {
+				out.writeByte(SEGMENT_VARIABLE);
+				writeString(((VariableString.VariableSegment)segment).getVariableName());
+			}
+		}
+	}
+
+	private void writeNullableVariableString(VariableString string) throws IOException {
+		out.writeBoolean(string != null);
+		if (string != null)
+			writeVariableString(string);
+	}
+
+	private void writeStrings(Set<String> strings) throws IOException {
+		List<String> list = new ArrayList<>(strings);
+		writeVarInt(list.size());
+		for (String string : list) {
+			writeString(string);
+		}
+	}
+
+	private void writeInteger(Integer value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null)
+			out.writeInt(value);
+	}
+
+	/**
+	 * Writes a reference to the specified string in the string table. A null string is written as
+	 * 0, and any other string as its index in the string table plus 1.
+	 *
+	 * @param string the string (can be null)
+	 * @throws IOException if a writing error occurs
+	 */
+	private void writeString(String string) throws IOException {
+		if (string == null) {
+			writeVarInt(0);
+			return;
+		}
+		Integer index = strings.get(string);
+		if (index == null) {
+			index = strings.size();
+			strings.put(string, index);
+		}
+		writeVarInt(index + 1);
+	}
+
+	private void writeVarInt(int value) throws IOException {
+		writeVarInt(out, value);
+	}
+
+	/**
+	 * Writes a non-negative int value in a variable number of bytes. Each byte contains 7 bits of
+	 * the value, and the highest bit is set if more bytes follow.
+	 *
+	 * @param out the output
+	 * @param value the value
+	 * @throws IOException if a writing error occurs
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+}